@@ -0,0 +1,104 @@
+package com.example.application;
+
+import akka.javasdk.JsonSupport;
+import akka.javasdk.agent.AgentRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * The prompts built around every LLM call, for growing numbers of preferences and growing
+ * agent responses. Each benchmark only takes the state it depends on, so that it isn't run
+ * again for parameters it ignores. Run with {@code -prof gc} to track allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Agents {
+        private List<AgentRegistry.AgentInfo> agents;
+
+        @Setup
+        public void setup() {
+            agents = List.of(
+                    new AgentRegistry.AgentInfo("weather-agent", "Weather Agent", "An agent that provides weather information.", "worker"),
+                    new AgentRegistry.AgentInfo("planning-agent", "Planning Agent", "An agent that suggests plans in the real world.", "worker")
+            );
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class UserPreferences {
+        @Param({"0", "10", "100"})
+        public int preferenceCount;
+
+        private List<String> preferences;
+
+        @Setup
+        public void setup() {
+            preferences = IntStream.range(0, preferenceCount)
+                    .mapToObj(i -> "I prefer option number " + i + " whenever it is available")
+                    .toList();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class AgentResponses {
+        @Param({"256", "4096", "65536"})
+        public int responseSize;
+
+        private String response;
+        private SummarizerAgent.Request summaryRequest;
+        private List<BatchEvaluatorAgent.PlanToEvaluate> plansToEvaluate;
+
+        @Setup
+        public void setup() {
+            response = "x".repeat(responseSize);
+            summaryRequest = new SummarizerAgent.Request("A weekend in Lisbon", List.of(response, response, response));
+            plansToEvaluate = IntStream.range(0, 5)
+                    .mapToObj(i -> new BatchEvaluatorAgent.PlanToEvaluate("session-" + i, "A weekend in Lisbon", response))
+                    .toList();
+        }
+    }
+
+    @Benchmark
+    public String evaluationPrompt(UserPreferences preferences, AgentResponses responses) {
+        return EvaluatorAgent.buildEvaluationPrompt("A weekend in Lisbon", responses.response, preferences.preferences);
+    }
+
+    @Benchmark
+    public String batchEvaluationPrompt(UserPreferences preferences, AgentResponses responses) {
+        return BatchEvaluatorAgent.buildEvaluationPrompt(responses.plansToEvaluate, preferences.preferences);
+    }
+
+    @Benchmark
+    public String coordinatorSystemMessage(Agents agents) {
+        return CoordinatorAgent.buildSystemMessage(JsonSupport.encodeToString(agents.agents));
+    }
+
+    @Benchmark
+    public String selectorSystemMessage(Agents agents) {
+        return SelectorAgent.buildSystemMessage(JsonSupport.encodeToString(agents.agents));
+    }
+
+    @Benchmark
+    public String summarizerUserMessage(AgentResponses responses) {
+        return SummarizerAgent.buildUserMessage(responses.summaryRequest);
+    }
+}
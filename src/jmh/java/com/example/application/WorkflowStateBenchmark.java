@@ -0,0 +1,77 @@
+package com.example.application;
+
+import com.example.domain.AgentPlan;
+import com.example.domain.AgentPlanStep;
+import com.example.domain.AgentResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The copy and transition methods of the plan-trip workflow state, for plans with a growing
+ * number of steps and growing agent responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkflowStateBenchmark {
+
+    @Param({"2", "8"})
+    public int stepCount;
+
+    @Param({"256", "65536"})
+    public int responseSize;
+
+    private PlanTripWorkflow.State planned;
+    private Map<String, AgentResponse> firstResponse;
+
+    @Setup
+    public void setup() {
+        var steps = IntStream.range(0, stepCount)
+                .mapToObj(i -> new AgentPlanStep("agent-" + i, "query " + i, i == 0 ? List.of() : List.of("agent-" + (i - 1))))
+                .collect(Collectors.toCollection(ArrayList::new));
+        planned = PlanTripWorkflow.State
+                .init("user", "A weekend in Lisbon", false, Instant.EPOCH)
+                .withPlan(new AgentPlan(steps));
+        firstResponse = Map.of("agent-0", AgentResponse.inline("x".repeat(responseSize)));
+    }
+
+    @Benchmark
+    public PlanTripWorkflow.State addAgentResponses() {
+        return planned.addAgentResponses(firstResponse);
+    }
+
+    @Benchmark
+    public List<AgentPlanStep> readySteps() {
+        return planned.readySteps();
+    }
+
+    @Benchmark
+    public PlanTripWorkflow.State stepTransition() {
+        return planned.inStep("execute-plan");
+    }
+
+    @Benchmark
+    public PlanTripWorkflow.State complete() {
+        return planned.withFinalAnswer("done").complete();
+    }
+}
@@ -1,12 +1,33 @@
 package com.example;
 
+import akka.javasdk.DependencyProvider;
 import akka.javasdk.ServiceSetup;
 import akka.javasdk.annotations.Setup;
+import com.example.application.AdmissionControl;
+import com.example.application.AgentMatcher;
+import com.example.application.AgentMatchers;
+import com.example.application.AgentModels;
+import com.example.application.BatchPlanner;
+import com.example.application.HedgedCalls;
+import com.example.application.LlmRateLimiter;
+import com.example.application.Metrics;
+import com.example.application.PlanCoalescer;
+import com.example.application.PlanTripWorkflow;
+import com.example.application.PlanningCache;
+import com.example.application.PreferencesCache;
+import com.example.application.PreferencesReEvaluation;
+import com.example.application.ResponseCache;
+import com.example.application.ResponseStore;
+import com.example.application.SummaryBudget;
 import com.typesafe.config.Config;
 
+import java.util.Map;
+
 @Setup
 public class Bootstrap implements ServiceSetup {
 
+  private final Map<Class<?>, Object> dependencies;
+
   public Bootstrap(Config config) {
     if (
       config.getString("akka.javasdk.agent.model-provider").equals("openai") &&
@@ -16,5 +37,50 @@ public class Bootstrap implements ServiceSetup {
         "No API keys found. Make sure you have OPENAI_API_KEY defined as environment variable, or change the model provider configuration in application.conf to use a different LLM."
       );
     }
+
+    // shared, in-memory services that outlive a single component invocation
+    var metrics = new Metrics();
+    var rateLimiter = new LlmRateLimiter(LlmRateLimiter.Settings.fromConfig(config.getConfig("trip-planner.llm-rate-limit")), metrics);
+    this.dependencies = Map.ofEntries(
+      Map.entry(PlanningCache.class, PlanningCache.fromConfig(config.getConfig("trip-planner.query-cache"))),
+      Map.entry(AgentMatchers.class, new AgentMatchers(AgentMatcher.Settings.fromConfig(config.getConfig("trip-planner.selection.fast-path")))),
+      Map.entry(PreferencesReEvaluation.Settings.class, PreferencesReEvaluation.Settings.fromConfig(config.getConfig("trip-planner.re-evaluation"))),
+      Map.entry(PreferencesCache.class, PreferencesCache.fromConfig(config.getConfig("trip-planner.preferences-cache"))),
+      Map.entry(ResponseStore.Settings.class, ResponseStore.Settings.fromConfig(config.getConfig("trip-planner.response-store"))),
+      Map.entry(AgentModels.class, AgentModels.fromConfig(config, rateLimiter, metrics)),
+      Map.entry(Metrics.class, metrics),
+      Map.entry(SummaryBudget.Settings.class, SummaryBudget.Settings.fromConfig(config.getConfig("trip-planner.summarization"), modelName(config))),
+      Map.entry(PlanCoalescer.class, PlanCoalescer.fromConfig(config.getConfig("trip-planner.coalescing"))),
+      Map.entry(PlanTripWorkflow.RerunSettings.class, PlanTripWorkflow.RerunSettings.fromConfig(config.getConfig("trip-planner.rerun"))),
+      Map.entry(PlanTripWorkflow.SpeculationSettings.class, PlanTripWorkflow.SpeculationSettings.fromConfig(config.getConfig("trip-planner.speculation"))),
+      Map.entry(BatchPlanner.class, new BatchPlanner(BatchPlanner.Settings.fromConfig(config.getConfig("trip-planner.batch")))),
+      Map.entry(ResponseCache.class, new ResponseCache(ResponseCache.Settings.fromConfig(config.getConfig("trip-planner.response-cache")), metrics)),
+      Map.entry(HedgedCalls.class, new HedgedCalls(HedgedCalls.Settings.fromConfig(config.getConfig("trip-planner.hedging")), rateLimiter, metrics)),
+      Map.entry(LlmRateLimiter.class, rateLimiter),
+      Map.entry(AdmissionControl.class, new AdmissionControl(AdmissionControl.Settings.fromConfig(config.getConfig("trip-planner.admission")), metrics))
+    );
+  }
+
+  /**
+   * The name of the configured model, or the provider name for providers without one.
+   */
+  private static String modelName(Config config) {
+    var provider = config.getString("akka.javasdk.agent.model-provider");
+    var modelNamePath = "akka.javasdk.agent." + provider + ".model-name";
+    return config.hasPath(modelNamePath) ? config.getString(modelNamePath) : provider;
+  }
+
+  @Override
+  public DependencyProvider createDependencyProvider() {
+    return new DependencyProvider() {
+      @Override
+      public <T> T getDependency(Class<T> clazz) {
+        var dependency = dependencies.get(clazz);
+        if (dependency == null) {
+          throw new IllegalArgumentException("No dependency registered for " + clazz.getName());
+        }
+        return clazz.cast(dependency);
+      }
+    };
   }
 }
@@ -0,0 +1,27 @@
+package com.example.api;
+
+import akka.http.javadsl.model.HttpResponse;
+import akka.javasdk.annotations.Acl;
+import akka.javasdk.annotations.http.Get;
+import akka.javasdk.annotations.http.HttpEndpoint;
+import akka.javasdk.http.HttpResponses;
+import com.example.application.Metrics;
+
+/**
+ * The latency, failure and token metrics of this service in the Prometheus text format.
+ */
+@Acl(allow = @Acl.Matcher(principal = Acl.Principal.INTERNET))
+@HttpEndpoint
+public class MetricsEndpoint {
+
+    private final Metrics metrics;
+
+    public MetricsEndpoint(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Get("/metrics")
+    public HttpResponse metrics() {
+        return HttpResponses.ok(metrics.scrape());
+    }
+}
@@ -1,86 +1,472 @@
 package com.example.api;
 
+import akka.Done;
+import akka.NotUsed;
 import akka.javasdk.annotations.Acl;
 import akka.javasdk.annotations.http.Get;
 import akka.javasdk.annotations.http.HttpEndpoint;
 import akka.javasdk.annotations.http.Post;
 import akka.javasdk.client.ComponentClient;
+import com.example.application.AdmissionControl;
+import com.example.application.BatchPlanner;
+import com.example.application.Metrics;
+import com.example.application.PlanCoalescer;
 import com.example.application.PlanTripWorkflow;
 import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.model.headers.RetryAfter;
+import akka.javasdk.http.AbstractHttpEndpoint;
 import akka.javasdk.http.HttpResponses;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
 import com.example.application.PlanView;
+import com.example.application.ResponseStore;
+import com.example.application.SelectorAgent;
+import com.example.application.StreamingSummarizerAgent;
+import com.example.application.SummarizerAgent;
+import com.example.application.SummaryBudget;
 import com.example.entity.PreferencesEntity;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 @Acl(allow = @Acl.Matcher(principal = Acl.Principal.INTERNET))
 @HttpEndpoint
-public class PlanningEndpoint {
+public class PlanningEndpoint extends AbstractHttpEndpoint {
 
     public record Request(String message) {}
     public record AddPreference(String preference) {}
+    public record AddPreferences(List<String> preferences) {}
+    public record BatchRequest(List<String> messages) {}
+    public record BatchResponse(List<String> locations) {}
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_WAIT_MS = 60_000;
 
     private final ComponentClient componentClient;
+    private final ResponseStore responseStore;
+    private final SummaryBudget summaryBudget;
+    private final PlanCoalescer planCoalescer;
+    private final BatchPlanner batchPlanner;
+    private final AdmissionControl admissionControl;
+    private final Metrics metrics;
+    private final Materializer materializer;
 
-    public record PlansList(List<Suggestion> suggestions) {
-        static PlansList fromView(PlanView.PlanEntries entries) {
+    public record PlansList(List<Suggestion> suggestions, String nextPageToken, boolean hasMore) {
+        static PlansList fromView(PlanView.PlanSummaries summaries, String userId) {
             return new PlansList(
-                    entries.entries().stream().map(Suggestion::fromView).toList()
+                    summaries.entries().stream().map(summary -> Suggestion.fromView(summary, userId)).toList(),
+                    summaries.nextPageToken(),
+                    summaries.hasMore()
+            );
+        }
+    }
+
+    /**
+     * A suggestion without its answer, which is available at {@code location}.
+     */
+    public record Suggestion(String sessionId, String userQuestion, String status, Instant createdAt, String location) {
+        static Suggestion fromView(PlanView.PlanSummary summary, String userId) {
+            return new Suggestion(
+                    summary.sessionId(),
+                    summary.userQuestion(),
+                    summary.status(),
+                    summary.createdAt(),
+                    "/plans/" + userId + "/" + summary.sessionId()
             );
         }
     }
 
-    public record Suggestion(String userQuestion, String answer) {
-        static Suggestion fromView(PlanView.PlanEntry entry) {
-            return new Suggestion(entry.userQuestion(), entry.finalAnswer());
+    /**
+     * An event pushed to clients of the streaming endpoint: one of "started", "progress",
+     * "token", "completed" or "failed".
+     */
+    public record StreamEvent(
+            String event,
+            String sessionId,
+            String step,
+            List<String> completedAgents,
+            String token
+    ) {
+        static StreamEvent started(String sessionId) {
+            return new StreamEvent("started", sessionId, "select-agents", List.of(), null);
+        }
+
+        static StreamEvent fromView(PlanView.PlanEntry entry) {
+            var event = "FAILED".equals(entry.status()) ? "failed" : "progress";
+            return new StreamEvent(event, entry.sessionId(), entry.currentStep(), entry.completedAgents(), null);
+        }
+
+        static StreamEvent token(String sessionId, String token) {
+            return new StreamEvent("token", sessionId, "summarize", null, token);
+        }
+
+        static StreamEvent completed(String sessionId) {
+            return new StreamEvent("completed", sessionId, "summarize", null, null);
         }
     }
 
-    public PlanningEndpoint(ComponentClient componentClient) {
+    public PlanningEndpoint(
+            ComponentClient componentClient,
+            ResponseStore.Settings responseStoreSettings,
+            SummaryBudget.Settings summaryBudgetSettings,
+            PlanCoalescer planCoalescer,
+            BatchPlanner batchPlanner,
+            AdmissionControl admissionControl,
+            Metrics metrics,
+            Materializer materializer
+    ) {
         this.componentClient = componentClient;
+        this.responseStore = new ResponseStore(componentClient, responseStoreSettings);
+        this.summaryBudget = new SummaryBudget(componentClient, summaryBudgetSettings);
+        this.planCoalescer = planCoalescer;
+        this.batchPlanner = batchPlanner;
+        this.admissionControl = admissionControl;
+        this.metrics = metrics;
+        this.materializer = materializer;
     }
 
+    /**
+     * Starts a plan. With coalescing enabled, a duplicate of a recent request gets the location
+     * of the plan started for that request instead. When too many plans are running, the request
+     * is answered with 429 and a Retry-After header.
+     */
     @Post("/plans/{userId}")
-    public HttpResponse suggestPlans(String userId, Request request) {
+    public CompletionStage<HttpResponse> suggestPlans(String userId, Request request) {
+        metrics.adjust(Metrics.PLAN_REQUESTS_IN_FLIGHT, 1);
+        return suggestPlan(userId, request)
+                .whenComplete((response, error) -> metrics.adjust(Metrics.PLAN_REQUESTS_IN_FLIGHT, -1));
+    }
+
+    private CompletionStage<HttpResponse> suggestPlan(String userId, Request request) {
+        if (!planCoalescer.enabled()) {
+            return admittedPlan(userId, request)
+                    .thenApply(sessionId -> HttpResponses.created(Done.getInstance(), "/plans/" + userId + "/" + sessionId))
+                    .exceptionally(PlanningEndpoint::rejected);
+        }
+
+        return componentClient
+                .forEventSourcedEntity(userId)
+                .method(PreferencesEntity::getPreferences)
+                .invokeAsync()
+                .thenCompose(preferences -> {
+                    var attempt = planCoalescer.startOnce(
+                            userId,
+                            request.message(),
+                            preferences.version(),
+                            () -> admittedPlan(userId, request)
+                    );
+                    if (attempt.coalesced()) {
+                        metrics.increment(Metrics.COALESCED_PLAN_REQUESTS, 1);
+                    }
+                    return attempt.sessionId();
+                })
+                .thenApply(sessionId -> HttpResponses.created(Done.getInstance(), "/plans/" + userId + "/" + sessionId))
+                .exceptionally(PlanningEndpoint::rejected);
+    }
+
+    private CompletionStage<String> admittedPlan(String userId, Request request) {
+        return admissionControl.admit(
+                userId,
+                1,
+                () -> startPlan(userId, request),
+                sessionId -> awaitFinished(sessionId, admissionControl.settings().maxPlanDuration())
+        );
+    }
+
+    /**
+     * Answers 429 to the requests turned away by the admission control, and fails otherwise.
+     */
+    private static HttpResponse rejected(Throwable error) {
+        var cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof AdmissionControl.Rejected rejected) {
+            return HttpResponse.create()
+                    .withStatus(StatusCodes.TOO_MANY_REQUESTS)
+                    .addHeader(RetryAfter.create(Math.max(1, rejected.retryAfter().toSeconds())))
+                    .withEntity(rejected.getMessage());
+        }
+        throw error instanceof CompletionException completionException ? completionException : new CompletionException(error);
+    }
+
+    private CompletionStage<String> startPlan(String userId, Request request) {
         var sessionId = UUID.randomUUID().toString();
-        var res = componentClient
+        return componentClient
                 .forWorkflow(sessionId)
                 .method(PlanTripWorkflow::start)
-                .invoke(new PlanTripWorkflow.Request(userId, request.message()));
-        return HttpResponses.created(res, "/plans/" + userId + "/" + sessionId);
+                .invokeAsync(new PlanTripWorkflow.Request(userId, request.message()))
+                .thenApply(__ -> sessionId);
+    }
+
+    /**
+     * Starts a plan for each of several related questions, and returns their locations in the
+     * order of the questions. The agents are selected once for all the questions, and the
+     * preferences read once; only some of the plans run at a time, the others are queued and
+     * answer "not available (yet)" until they are started and finished.
+     */
+    @Post("/plans/{userId}/batch")
+    public CompletionStage<HttpResponse> suggestPlansBatch(String userId, BatchRequest request) {
+        var messages = request.messages() == null ? List.<String>of() : List.copyOf(request.messages());
+        if (messages.isEmpty() || messages.size() > batchPlanner.settings().maxSize()) {
+            return CompletableFuture.completedFuture(HttpResponses.badRequest(
+                    "A batch takes 1 to " + batchPlanner.settings().maxSize() + " messages"
+            ));
+        }
+
+        var sessionIds = messages.stream().map(__ -> UUID.randomUUID().toString()).toList();
+        var locations = sessionIds.stream().map(sessionId -> "/plans/" + userId + "/" + sessionId).toList();
+        // the plans of a batch that run at a time count against the limits
+        var running = Math.min(batchPlanner.settings().parallelism(), messages.size());
+        return admissionControl
+                .admit(userId, running, () -> startBatch(userId, messages, sessionIds), this::awaitBatchFinished)
+                .thenApply(__ -> HttpResponses.created(new BatchResponse(locations)))
+                .exceptionally(PlanningEndpoint::rejected);
+    }
+
+    private CompletionStage<List<String>> startBatch(String userId, List<String> messages, List<String> sessionIds) {
+        var preferencesRead = componentClient
+                .forEventSourcedEntity(userId)
+                .method(PreferencesEntity::getPreferences)
+                .invokeAsync();
+        // a single selection covers all the questions, the plan of each one picks what it needs
+        var selection = componentClient
+                .forAgent()
+                .inSession(UUID.randomUUID().toString())
+                .method(SelectorAgent::selectAgents)
+                .invokeAsync(String.join("\n", messages));
+
+        return selection.thenCombine(preferencesRead, (agentSelection, preferences) -> {
+            Function<Integer, CompletableFuture<Done>> start = index -> componentClient
+                    .forWorkflow(sessionIds.get(index))
+                    .method(PlanTripWorkflow::start)
+                    .invokeAsync(new PlanTripWorkflow.Request(
+                            userId,
+                            messages.get(index),
+                            false,
+                            agentSelection,
+                            preferences,
+                            batchPlanner.isQueued(index),
+                            batchPlanner.next(sessionIds, index)
+                    ))
+                    .toCompletableFuture();
+            // the queued plans are created first, so that each exists before the plan ahead
+            // of it in its lane finishes and starts it
+            var queued = IntStream.range(0, sessionIds.size())
+                    .filter(batchPlanner::isQueued)
+                    .mapToObj(start::apply)
+                    .toArray(CompletableFuture[]::new);
+            return CompletableFuture.allOf(queued).thenCompose(__ -> CompletableFuture.allOf(
+                    IntStream.range(0, sessionIds.size())
+                            .filter(index -> !batchPlanner.isQueued(index))
+                            .mapToObj(start::apply)
+                            .toArray(CompletableFuture[]::new)
+            ));
+        }).thenCompose(started -> started).thenApply(__ -> sessionIds);
     }
 
+    /**
+     * Completes when the last plan of every lane of the batch is finished.
+     */
+    private CompletionStage<?> awaitBatchFinished(List<String> sessionIds) {
+        var timeout = batchPlanner.timeout(sessionIds.size());
+        return CompletableFuture.allOf(batchPlanner.lastOfLanes(sessionIds).stream()
+                .map(sessionId -> awaitFinished(sessionId, timeout).toCompletableFuture())
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Starts a plan and streams its progress as Server-Sent Events, followed by the tokens
+     * of the final answer as they are generated.
+     */
+    @Post("/plans/{userId}/stream")
+    public CompletionStage<HttpResponse> streamPlan(String userId, Request request) {
+        var sessionId = UUID.randomUUID().toString();
+        return admissionControl
+                .admit(
+                        userId,
+                        1,
+                        () -> componentClient
+                                .forWorkflow(sessionId)
+                                .method(PlanTripWorkflow::start)
+                                .invokeAsync(new PlanTripWorkflow.Request(userId, request.message(), true)),
+                        __ -> awaitFinished(sessionId, admissionControl.settings().maxPlanDuration())
+                )
+                .thenApply(__ -> planEvents(sessionId))
+                .exceptionally(PlanningEndpoint::rejected);
+    }
+
+    private HttpResponse planEvents(String sessionId) {
+        var progress = componentClient
+                .forView()
+                .stream(PlanView::getPlanUpdates)
+                .source(sessionId)
+                .takeWhile(entry -> !isFinished(entry), true)
+                .flatMapConcat(entry -> "AWAITING_SUMMARY".equals(entry.status())
+                        ? Source.single(StreamEvent.fromView(entry)).concat(summaryTokens(sessionId))
+                        : Source.single(StreamEvent.fromView(entry)));
+
+        return HttpResponses.serverSentEvents(Source.single(StreamEvent.started(sessionId)).concat(progress));
+    }
+
+    private static boolean isFinished(PlanView.PlanEntry entry) {
+        return "AWAITING_SUMMARY".equals(entry.status()) ||
+                "COMPLETED".equals(entry.status()) ||
+                "FAILED".equals(entry.status());
+    }
+
+    private Source<StreamEvent, NotUsed> summaryTokens(String sessionId) {
+        var answer = new StringBuilder();
+        var reported = new AtomicBoolean(false);
+
+        var summaryRequest = componentClient
+                .forWorkflow(sessionId)
+                .method(PlanTripWorkflow::getPendingSummary)
+                .invokeAsync()
+                .thenCompose(pending -> responseStore
+                        .resolve(pending.agentResponses())
+                        .thenCompose(responses -> summaryBudget.fit(
+                                sessionId,
+                                new SummarizerAgent.Request(pending.originalQuery(), responses)
+                        )));
+
+        return Source.completionStage(summaryRequest)
+                .flatMapConcat(request -> componentClient
+                        .forAgent()
+                        .inSession(sessionId)
+                        .tokenStream(StreamingSummarizerAgent::summarize)
+                        .source(request))
+                .map(token -> {
+                    answer.append(token);
+                    return StreamEvent.token(sessionId, token);
+                })
+                // only reached when all tokens were streamed, the answer is then stored in the workflow
+                .concat(Source.lazyCompletionStage(() -> {
+                    reported.set(true);
+                    return componentClient
+                            .forWorkflow(sessionId)
+                            .method(PlanTripWorkflow::completeSummary)
+                            .invokeAsync(answer.toString())
+                            .thenApply(__ -> StreamEvent.completed(sessionId));
+                }))
+                .watchTermination((notUsed, termination) -> {
+                    termination.whenComplete((done, error) -> {
+                        if (!reported.get()) {
+                            // the client went away or streaming failed, let the workflow summarize on its own
+                            componentClient
+                                    .forWorkflow(sessionId)
+                                    .method(PlanTripWorkflow::summarizeNow)
+                                    .invokeAsync();
+                        }
+                    });
+                    return NotUsed.getInstance();
+                });
+    }
+
+    /**
+     * Returns the answer of a plan. With {@code waitMs}, the request is held open until the
+     * plan is completed or failed, or until that many milliseconds have passed.
+     */
     @Get("/plans/{userId}/{sessionId}")
-    public HttpResponse getAnswer(String userId, String sessionId) {
-        var res = componentClient
+    public CompletionStage<HttpResponse> getAnswer(String userId, String sessionId) {
+        var waitMsParam = requestContext().queryParams().getString("waitMs");
+        var parsedWaitMs = waitMsParam.map(PlanningEndpoint::parseWaitMs).orElse(Optional.of(0));
+        if (parsedWaitMs.isEmpty()) {
+            return CompletableFuture.completedFuture(HttpResponses.badRequest(
+                    "waitMs must be a number of milliseconds, was '" + waitMsParam.get() + "'"
+            ));
+        }
+        var waitMs = parsedWaitMs.get();
+        if (waitMs <= 0) {
+            return readAnswer(sessionId);
+        } else {
+            return awaitFinished(sessionId, Duration.ofMillis(Math.min(waitMs, MAX_WAIT_MS)))
+                    .thenCompose(__ -> readAnswer(sessionId));
+        }
+    }
+
+    /**
+     * The waitMs parameter as a number of milliseconds, or empty when it isn't one.
+     */
+    static Optional<Integer> parseWaitMs(String value) {
+        try {
+            return Optional.of(Integer.parseInt(value.strip()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Completes when the plan is completed or failed, or when the timeout has passed.
+     */
+    private CompletionStage<?> awaitFinished(String sessionId, Duration timeout) {
+        // woken up by the view updates of the plan rather than by polling the workflow
+        return componentClient
+                .forView()
+                .stream(PlanView::getPlanUpdates)
+                .source(sessionId)
+                .filter(entry -> "COMPLETED".equals(entry.status()) || "FAILED".equals(entry.status()))
+                .takeWithin(timeout)
+                .runWith(Sink.headOption(), materializer);
+    }
+
+    private CompletionStage<HttpResponse> readAnswer(String sessionId) {
+        return componentClient
                 .forWorkflow(sessionId)
                 .method(PlanTripWorkflow::getAnswer)
-                .invoke();
-
-        if (res.isEmpty()) return HttpResponses.notFound(
-                "Answer for '" + sessionId + "' not available (yet)"
-        );
-        else return HttpResponses.ok(res);
+                .invokeAsync()
+                .thenApply(res -> {
+                    if (res.isEmpty()) return HttpResponses.notFound(
+                            "Answer for '" + sessionId + "' not available (yet)"
+                    );
+                    else return HttpResponses.ok(res);
+                });
     }
 
     @Post("/preferences/{userId}")
-    public HttpResponse addPreference(String userId, AddPreference request) {
-        componentClient
+    public CompletionStage<HttpResponse> addPreference(String userId, AddPreference request) {
+        return componentClient
                 .forEventSourcedEntity(userId)
                 .method(PreferencesEntity::addPreference)
-                .invoke(new PreferencesEntity.AddPreference(request.preference()));
+                .invokeAsync(new PreferencesEntity.AddPreference(request.preference()))
+                .thenApply(__ -> HttpResponses.created());
+    }
 
-        return HttpResponses.created();
+    /**
+     * Adds several preferences at once, the ones the user already has are ignored.
+     */
+    @Post("/preferences/{userId}/bulk")
+    public CompletionStage<HttpResponse> addPreferences(String userId, AddPreferences request) {
+        return componentClient
+                .forEventSourcedEntity(userId)
+                .method(PreferencesEntity::addPreferences)
+                .invokeAsync(new PreferencesEntity.AddPreferences(request.preferences()))
+                .thenApply(__ -> HttpResponses.created());
     }
 
+    /**
+     * Lists the plans of a user, most recent first, one page at a time. The next page is
+     * requested with the {@code pageToken} returned in the previous one.
+     */
     @Get("/plans/{userId}")
-    public PlansList listPlans(String userId) {
-        var viewResult = componentClient
-                .forView()
-                .method(PlanView::getPlans)
-                .invoke(userId);
+    public CompletionStage<PlansList> listPlans(String userId) {
+        var queryParams = requestContext().queryParams();
+        var pageToken = queryParams.getString("pageToken").orElse("");
+        var pageSize = Math.clamp(queryParams.getInteger("pageSize").orElse(DEFAULT_PAGE_SIZE), 1, MAX_PAGE_SIZE);
 
-        return PlansList.fromView(viewResult);
+        return componentClient
+                .forView()
+                .method(PlanView::getPlanSummaries)
+                .invokeAsync(new PlanView.PageRequest(userId, pageToken, pageSize))
+                .thenApply(viewResult -> PlansList.fromView(viewResult, userId));
     }
 }
@@ -0,0 +1,120 @@
+package com.example.application;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of plans running at a time, in total and per user, so that a spike of
+ * requests is turned away early instead of slowing every running plan down. Running plans are
+ * counted in memory, per node, from the moment they are started until they finish or have run
+ * for the maximum plan duration.
+ */
+public class AdmissionControl {
+
+    /**
+     * @param maxPlans        the maximum number of plans running at a time
+     * @param maxPlansPerUser the maximum number of plans of a single user running at a time
+     * @param retryAfter      when clients are told to try again
+     * @param maxPlanDuration how long a plan is counted as running, at most
+     */
+    public record Settings(boolean enabled, int maxPlans, int maxPlansPerUser, Duration retryAfter, Duration maxPlanDuration) {
+        public static Settings fromConfig(Config config) {
+            return new Settings(
+                    config.getBoolean("enabled"),
+                    config.getInt("max-plans"),
+                    config.getInt("max-plans-per-user"),
+                    config.getDuration("retry-after"),
+                    config.getDuration("max-plan-duration")
+            );
+        }
+    }
+
+    /**
+     * The plans were not started, because too many plans are running.
+     */
+    public static class Rejected extends RuntimeException {
+        private final Duration retryAfter;
+
+        public Rejected(String message, Duration retryAfter) {
+            super(message);
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration retryAfter() {
+            return retryAfter;
+        }
+    }
+
+    private final Settings settings;
+    private final Metrics metrics;
+    private final Map<String, Integer> runningByUser = new HashMap<>();
+    private int running;
+
+    public AdmissionControl(Settings settings, Metrics metrics) {
+        this.settings = settings;
+        this.metrics = metrics;
+    }
+
+    public Settings settings() {
+        return settings;
+    }
+
+    /**
+     * Starts the plans when there is room for them, or fails with {@link Rejected} otherwise.
+     *
+     * @param plans    the number of plans that are started
+     * @param start    starts the plans
+     * @param finished completes when the started plans are finished, or have run for
+     *                 {@link Settings#maxPlanDuration()}
+     */
+    public <T> CompletionStage<T> admit(
+            String userId,
+            int plans,
+            Supplier<CompletionStage<T>> start,
+            Function<T, CompletionStage<?>> finished
+    ) {
+        if (!settings.enabled()) {
+            return start.get();
+        }
+        var rejection = tryAdmit(userId, plans);
+        if (rejection.isPresent()) {
+            metrics.increment(Metrics.REJECTED_PLANS, plans, "limit", rejection.get());
+            return CompletableFuture.failedFuture(new Rejected(
+                    "Too many plans running (" + rejection.get() + " limit), try again later",
+                    settings.retryAfter()
+            ));
+        }
+        return start.get().whenComplete((started, error) -> {
+            if (error != null) {
+                release(userId, plans);
+            } else {
+                finished.apply(started).whenComplete((__, finishError) -> release(userId, plans));
+            }
+        });
+    }
+
+    /**
+     * Counts the plans as running, or returns why they can't run.
+     */
+    synchronized Optional<String> tryAdmit(String userId, int plans) {
+        if (running + plans > settings.maxPlans()) return Optional.of("global");
+        var ofUser = runningByUser.getOrDefault(userId, 0);
+        if (ofUser + plans > settings.maxPlansPerUser()) return Optional.of("user");
+        running += plans;
+        runningByUser.put(userId, ofUser + plans);
+        return Optional.empty();
+    }
+
+    synchronized void release(String userId, int plans) {
+        running -= plans;
+        runningByUser.computeIfPresent(userId, (__, ofUser) -> ofUser > plans ? ofUser - plans : null);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.application;
+
+import akka.javasdk.agent.AgentRegistry;
+import com.example.domain.AgentSelection;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A deterministic, local alternative to the LLM based agent selection. Each worker agent is
+ * scored against the user query using keywords derived from its {@code @AgentDescription} and
+ * the keywords configured for it in {@code trip-planner.selection.fast-path.rules}. A selection
+ * is only returned when it is unambiguous: every selected agent reaches the confidence threshold
+ * and no other agent is a partial match.
+ */
+public class AgentMatcher {
+
+    public record Settings(boolean enabled, double confidenceThreshold, Map<String, List<String>> rules) {
+
+        public static Settings fromConfig(Config config) {
+            var rules = new HashMap<String, List<String>>();
+            var rulesConfig = config.getConfig("rules");
+            rulesConfig.root().keySet().forEach(agentId ->
+                    rules.put(agentId, rulesConfig.getStringList(ConfigUtil.joinPath(agentId)))
+            );
+            return new Settings(config.getBoolean("enabled"), config.getDouble("confidence-threshold"), Map.copyOf(rules));
+        }
+    }
+
+    // a configured keyword is a strong signal, a word from the agent description a weak one
+    private static final double RULE_WEIGHT = 1.0;
+    private static final double DESCRIPTION_WEIGHT = 0.34;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "agent", "agents", "that", "this", "with", "from", "other", "like", "example",
+            "provide", "provides", "information", "related", "real", "suggest", "suggests",
+            "about", "what", "which", "your", "their", "there", "some", "into", "also", "etc"
+    );
+
+    private final Map<String, Set<String>> ruleKeywords;
+    private final Map<String, Set<String>> descriptionKeywords;
+
+    private AgentMatcher(Map<String, Set<String>> ruleKeywords, Map<String, Set<String>> descriptionKeywords) {
+        this.ruleKeywords = ruleKeywords;
+        this.descriptionKeywords = descriptionKeywords;
+    }
+
+    public static AgentMatcher create(Collection<AgentRegistry.AgentInfo> workers, Map<String, List<String>> rules) {
+        var ruleKeywords = new HashMap<String, Set<String>>();
+        var descriptionKeywords = new HashMap<String, Set<String>>();
+        for (var worker : workers) {
+            descriptionKeywords.put(worker.id(), keywords(worker.name() + " " + worker.description()));
+            ruleKeywords.put(
+                    worker.id(),
+                    rules.getOrDefault(worker.id(), List.of()).stream()
+                            .map(keyword -> stem(QueryCache.normalize(keyword)))
+                            .collect(Collectors.toSet())
+            );
+        }
+        return new AgentMatcher(ruleKeywords, descriptionKeywords);
+    }
+
+    /**
+     * Returns a selection when the query can be resolved with at least the given confidence,
+     * or empty when the decision should be left to the LLM.
+     */
+    public Optional<AgentSelection> select(String query, double confidenceThreshold) {
+        var queryWords = Arrays.stream(QueryCache.normalize(query).split(" "))
+                .map(AgentMatcher::stem)
+                .collect(Collectors.toSet());
+        var selected = new ArrayList<String>();
+        for (var agentId : descriptionKeywords.keySet().stream().sorted().toList()) {
+            var score = Math.min(
+                    1.0,
+                    RULE_WEIGHT * matches(ruleKeywords.get(agentId), queryWords) +
+                            DESCRIPTION_WEIGHT * matches(descriptionKeywords.get(agentId), queryWords)
+            );
+            if (score >= confidenceThreshold) {
+                selected.add(agentId);
+            } else if (score > 0) {
+                // a partial match may or may not be relevant, let the LLM decide
+                return Optional.empty();
+            }
+        }
+        return selected.isEmpty() ? Optional.empty() : Optional.of(new AgentSelection(List.copyOf(selected)));
+    }
+
+    private static long matches(Set<String> agentKeywords, Set<String> queryWords) {
+        return queryWords.stream().filter(agentKeywords::contains).count();
+    }
+
+    private static Set<String> keywords(String text) {
+        return Arrays.stream(QueryCache.normalize(text).split(" "))
+                .filter(word -> word.length() > 3 && !STOP_WORDS.contains(word))
+                .map(AgentMatcher::stem)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    static String stem(String word) {
+        return word.length() > 4 && word.endsWith("s") ? word.substring(0, word.length() - 1) : word;
+    }
+}
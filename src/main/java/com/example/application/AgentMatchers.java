@@ -0,0 +1,35 @@
+package com.example.application;
+
+import akka.javasdk.agent.AgentRegistry;
+
+/**
+ * The {@link AgentMatcher} of the registered worker agents, shared by the selector agent
+ * instances, which are created for every request. The matcher is only built again when the
+ * catalog of workers changes.
+ */
+public class AgentMatchers {
+
+    private record Built(String fingerprint, AgentMatcher matcher) {}
+
+    private final AgentMatcher.Settings settings;
+    private volatile Built built;
+
+    public AgentMatchers(AgentMatcher.Settings settings) {
+        this.settings = settings;
+    }
+
+    public AgentMatcher.Settings settings() {
+        return settings;
+    }
+
+    public AgentMatcher matcher(AgentRegistry agentRegistry) {
+        var fingerprint = PlanningCache.catalogFingerprint(agentRegistry);
+        var current = built;
+        if (current == null || !current.fingerprint().equals(fingerprint)) {
+            // built twice at worst when the catalog changes under concurrent requests, that's harmless
+            current = new Built(fingerprint, AgentMatcher.create(agentRegistry.agentsWithRole("worker"), settings.rules()));
+            built = current;
+        }
+        return current.matcher();
+    }
+}
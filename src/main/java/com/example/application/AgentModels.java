@@ -0,0 +1,181 @@
+package com.example.application;
+
+import akka.javasdk.agent.AgentContext;
+import akka.javasdk.agent.ModelProvider;
+import akka.javasdk.annotations.ComponentId;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The models used by the agents of this service. Models supported by the SDK are taken from
+ * {@code akka.javasdk.agent.model-provider}, or from the model configuration given for the
+ * agent's component id in {@code trip-planner.models.agents}; the {@code mock} value, which the
+ * SDK doesn't know about, selects the {@link MockModelProvider} configured under
+ * {@code akka.javasdk.agent.mock} for every agent. OpenAI models are built by this service
+ * rather than by the SDK, which doesn't expose the model calls of the providers it configures,
+ * so that the calls to them are recorded in {@link Metrics} per agent and take a token of the
+ * {@link LlmRateLimiter}, as those to the mock. Calls to the other providers don't.
+ */
+public class AgentModels {
+
+    /**
+     * @param agents           the path of the model configuration of an agent, by component id
+     * @param router           whether agents without a model of their own are routed by prompt size
+     * @param smallModel       the path of the model configuration used for small structured prompts
+     * @param smallModelTokens the estimated prompt size up to which structured prompts use the small model
+     * @param fallbackModel    the path of the model configuration used by hedges and retries, if any
+     */
+    public record Routing(
+            Map<String, String> agents,
+            boolean router,
+            String smallModel,
+            int smallModelTokens,
+            Optional<String> fallbackModel
+    ) {
+
+        public static Routing fromConfig(Config config) {
+            var agents = new HashMap<String, String>();
+            var agentsConfig = config.getConfig("agents");
+            agentsConfig.root().keySet().forEach(agent ->
+                    agents.put(agent, agentsConfig.getString(ConfigUtil.joinPath(agent)))
+            );
+            return new Routing(
+                    Map.copyOf(agents),
+                    config.getBoolean("router.enabled"),
+                    config.getString("router.small-model"),
+                    config.getInt("router.max-prompt-tokens"),
+                    Optional.of(config.getString("fallback-model")).filter(path -> !path.isBlank())
+            );
+        }
+    }
+
+    // the default model configuration, when the SDK is configured with OpenAI
+    private static final String DEFAULT_OPENAI = "akka.javasdk.agent.openai";
+
+    private final Optional<ModelProvider.Custom> mock;
+    private final Map<String, ModelProvider.Custom> openAi;
+    private final Routing routing;
+    private final LlmRateLimiter rateLimiter;
+    private final Metrics metrics;
+    private final Map<String, ModelProvider> metered = new ConcurrentHashMap<>();
+    private final Map<String, ModelProvider> configured = new ConcurrentHashMap<>();
+
+    /**
+     * @param openAi the OpenAI models, by path of their model configuration
+     */
+    public AgentModels(
+            Optional<ModelProvider.Custom> mock,
+            Map<String, ModelProvider.Custom> openAi,
+            Routing routing,
+            LlmRateLimiter rateLimiter,
+            Metrics metrics
+    ) {
+        this.mock = mock;
+        this.openAi = openAi;
+        this.routing = routing;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+    }
+
+    public static AgentModels fromConfig(Config config, LlmRateLimiter rateLimiter, Metrics metrics) {
+        var routing = Routing.fromConfig(config.getConfig("trip-planner.models"));
+        // fail at startup rather than on the first call of the agent
+        routing.agents().forEach((agent, path) -> requireModel(config, path, agent));
+        if (routing.router()) requireModel(config, routing.smallModel(), "router.small-model");
+        routing.fallbackModel().ifPresent(path -> requireModel(config, path, "fallback-model"));
+
+        if (config.getString("akka.javasdk.agent.model-provider").equals("mock")) {
+            var mock = MockModelProvider.fromConfig(config.getConfig("akka.javasdk.agent.mock"));
+            return new AgentModels(Optional.of(mock), Map.of(), routing, rateLimiter, metrics);
+        }
+
+        // OpenAI models are built here rather than by the SDK, so that their calls are metered
+        var paths = new HashSet<>(routing.agents().values());
+        if (routing.router()) paths.add(routing.smallModel());
+        routing.fallbackModel().ifPresent(paths::add);
+        if (config.getString("akka.javasdk.agent.model-provider").equals("openai")) paths.add(DEFAULT_OPENAI);
+        var openAi = new HashMap<String, ModelProvider.Custom>();
+        paths.stream()
+                .filter(path -> OpenAiModelProvider.isOpenAi(config, path))
+                .forEach(path -> openAi.put(path, new OpenAiModelProvider(OpenAiModelProvider.Settings.fromConfig(config.getConfig(path)))));
+        return new AgentModels(Optional.empty(), Map.copyOf(openAi), routing, rateLimiter, metrics);
+    }
+
+    private static void requireModel(Config config, String path, String usedBy) {
+        if (!config.hasPath(path)) {
+            throw new IllegalArgumentException("No model configuration at [" + path + "], used by [" + usedBy + "]");
+        }
+    }
+
+    /**
+     * @param agentClass the agent calling the model, its component id selects the model and
+     *                   labels the model metrics
+     */
+    public ModelProvider model(Class<?> agentClass) {
+        var agent = componentId(agentClass);
+        if (mock.isPresent()) {
+            return metered(agent, "mock", mock.get());
+        }
+        var path = routing.agents().get(agent);
+        if (path != null) {
+            return routed(agent, path);
+        } else if (openAi.containsKey(DEFAULT_OPENAI)) {
+            return metered(agent, DEFAULT_OPENAI, openAi.get(DEFAULT_OPENAI));
+        } else {
+            return ModelProvider.fromConfig();
+        }
+    }
+
+    /**
+     * Like {@link #model(Class)}, but the hedges and retries of a call, made in a session of their
+     * own by {@link HedgedCalls}, use the fallback model when one is configured: a slow or failing
+     * first attempt is then raced by a faster model.
+     */
+    public ModelProvider model(Class<?> agentClass, AgentContext context) {
+        return model(agentClass, context.sessionId());
+    }
+
+    ModelProvider model(Class<?> agentClass, String sessionId) {
+        if (mock.isEmpty() && routing.fallbackModel().isPresent() && HedgedCalls.isAttemptSession(sessionId)) {
+            return routed(componentId(agentClass), routing.fallbackModel().get());
+        }
+        return model(agentClass);
+    }
+
+    /**
+     * Like {@link #model(Class)}, but with the router enabled, the prompts of agents without a
+     * model of their own that are small and answered with a JSON structure go to the small model.
+     *
+     * @param prompt             the system and user messages of the call
+     * @param structuredResponse whether the response is parsed into a schema
+     */
+    public ModelProvider model(Class<?> agentClass, String prompt, boolean structuredResponse) {
+        var agent = componentId(agentClass);
+        if (mock.isEmpty() && routing.router() && !routing.agents().containsKey(agent) &&
+                structuredResponse && SummaryBudget.estimateTokens(prompt) <= routing.smallModelTokens()) {
+            return routed(agent, routing.smallModel());
+        }
+        return model(agentClass);
+    }
+
+    private ModelProvider metered(String agent, String path, ModelProvider.Custom model) {
+        return metered.computeIfAbsent(agent + "|" + path, __ -> new MeteredModelProvider(model, agent, rateLimiter, metrics));
+    }
+
+    private ModelProvider routed(String agent, String path) {
+        metrics.increment(Metrics.MODEL_ROUTES, 1, "agent", agent, "model", path);
+        var model = openAi.get(path);
+        return model != null ? metered(agent, path, model) : configured.computeIfAbsent(path, ModelProvider::fromConfig);
+    }
+
+    private static String componentId(Class<?> agentClass) {
+        var componentId = agentClass.getAnnotation(ComponentId.class);
+        return componentId != null ? componentId.value() : agentClass.getSimpleName();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.application;
+
+import akka.javasdk.annotations.ComponentId;
+import akka.javasdk.annotations.Consume;
+import akka.javasdk.client.ComponentClient;
+import akka.javasdk.consumer.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts the queued plans of a batch: once a plan is finished, the next plan of its lane is
+ * started. The queue is kept in the workflows themselves, so that it survives the node that
+ * received the batch.
+ */
+@ComponentId("batch-consumer")
+@Consume.FromWorkflow(PlanTripWorkflow.class)
+public class BatchConsumer extends Consumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchConsumer.class);
+
+    private final ComponentClient componentClient;
+
+    public BatchConsumer(ComponentClient componentClient) {
+        this.componentClient = componentClient;
+    }
+
+    public Effect onStateChange(PlanTripWorkflow.State state) {
+        var finished = state.status() == PlanTripWorkflow.Status.COMPLETED ||
+                state.status() == PlanTripWorkflow.Status.FAILED;
+        if (!finished || state.batch() == null || state.batch().nextSessionId() == null) {
+            return effects().ignore();
+        }
+
+        // a failed plan doesn't hold back the rest of its lane, and starting a plan that
+        // was started already does nothing
+        var nextSessionId = state.batch().nextSessionId();
+        logger.debug("Plan [{}] finished, starting [{}]", messageContext().eventSubject().get(), nextSessionId);
+        return effects().asyncDone(
+                componentClient
+                        .forWorkflow(nextSessionId)
+                        .method(PlanTripWorkflow::startQueued)
+                        .invokeAsync()
+        );
+    }
+}
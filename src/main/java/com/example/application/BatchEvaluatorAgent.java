@@ -0,0 +1,113 @@
+package com.example.application;
+
+import akka.javasdk.agent.Agent;
+import akka.javasdk.annotations.AgentDescription;
+import akka.javasdk.annotations.ComponentId;
+import akka.javasdk.client.ComponentClient;
+import com.example.domain.Preferences;
+import com.example.entity.PreferencesEntity;
+
+import java.util.List;
+
+@ComponentId("batch-evaluator-agent")
+@AgentDescription(
+        name = "Batch Evaluator Agent",
+        description = """
+  An agent that acts as an LLM judge to evaluate several AI responses of the same user
+  in a single call, with the same criteria as the Evaluator Agent.
+  """
+)
+public class BatchEvaluatorAgent extends Agent {
+
+    public record PlanToEvaluate(
+            String sessionId,
+            String originalRequest,
+            String finalAnswer
+    ) {}
+
+    public record BatchEvaluationRequest(
+            String userId,
+            List<PlanToEvaluate> plans,
+            Preferences preferences
+    ) {}
+
+    public record PlanEvaluation(
+            String sessionId,
+            int score,
+            String feedback
+    ) {}
+
+    public record BatchEvaluationResult(List<PlanEvaluation> evaluations) {}
+
+    private static final String SYSTEM_MESSAGE =
+            EvaluatorAgent.EVALUATION_CRITERIA +
+            """
+        
+            You will receive several answers, each one identified by a session id.
+            Evaluate each answer independently from the others.
+
+            Your response must be a single JSON object with the following structure:
+             {
+               "evaluations": [
+                  {
+                    "sessionId": "<the session id of the evaluated answer>",
+                    "score": <1 if the answer is correct, 0 if it is incorrect>,
+                    "feedback": "<specific feedback on what works well or deviations from preferences>"
+                  }
+               ]
+             }
+
+            There must be exactly one item in "evaluations" for each answer you received.
+            Do not include any explanations or text outside of the JSON structure.
+            """.stripIndent();
+
+    private final ComponentClient componentClient;
+    private final PreferencesCache preferencesCache;
+    private final AgentModels models;
+
+    public BatchEvaluatorAgent(ComponentClient componentClient, PreferencesCache preferencesCache, AgentModels models) {
+        this.componentClient = componentClient;
+        this.preferencesCache = preferencesCache;
+        this.models = models;
+    }
+
+    public Effect<BatchEvaluationResult> evaluate(BatchEvaluationRequest request) {
+        var allPreferences = request.preferences() != null
+                ? request.preferences()
+                : preferencesCache.getOrLoad(request.userId(), () -> componentClient
+                        .forEventSourcedEntity(request.userId())
+                        .method(PreferencesEntity::getPreferences)
+                        .invoke());
+
+        var evaluationPrompt = buildEvaluationPrompt(request.plans(), allPreferences.entries());
+        return effects()
+                .model(models.model(BatchEvaluatorAgent.class, SYSTEM_MESSAGE + evaluationPrompt, true))
+                .systemMessage(SYSTEM_MESSAGE)
+                .userMessage(evaluationPrompt)
+                .responseAs(BatchEvaluationResult.class)
+                .thenReply();
+    }
+
+    static String buildEvaluationPrompt(List<PlanToEvaluate> plans, List<String> preferences) {
+        StringBuilder prompt = new StringBuilder();
+
+        // preferences are shared by all the answers, so they are only sent once
+        if (!preferences.isEmpty()) {
+            prompt.append("USER PREFERENCES:\n");
+            preferences.forEach(preference -> prompt.append("- ").append(preference).append("\n"));
+            prompt.append("\n");
+        }
+
+        for (var plan : plans) {
+            prompt.append("SESSION ID: ").append(plan.sessionId()).append("\n");
+            prompt.append("ORIGINAL REQUEST:\n").append(plan.originalRequest()).append("\n");
+            prompt.append("FINAL ANSWER TO EVALUATE:\n").append(plan.finalAnswer()).append("\n\n");
+        }
+
+        prompt
+                .append("Please evaluate each final answer against its original request")
+                .append(preferences.isEmpty() ? "." : " and the user preferences.");
+
+        return prompt.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.application;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Splits the plans of a batch of related questions in {@code parallelism} lanes, so that at most
+ * that many run at a time. Every plan of a batch is created up front: the first plan of each
+ * lane is started, the others are queued, and each is started by {@link BatchConsumer} once the
+ * plan before it in its lane is finished.
+ */
+public class BatchPlanner {
+
+    /**
+     * @param maxSize     the maximum number of questions in a batch
+     * @param parallelism the maximum number of plans of a batch running at a time
+     * @param planTimeout how long a plan of a batch may take, the batch counts against the
+     *                    admission limits for at most this long per plan of its longest lane
+     */
+    public record Settings(int maxSize, int parallelism, Duration planTimeout) {
+        public static Settings fromConfig(Config config) {
+            return new Settings(
+                    config.getInt("max-size"),
+                    Math.max(1, config.getInt("parallelism")),
+                    config.getDuration("plan-timeout")
+            );
+        }
+    }
+
+    private final Settings settings;
+
+    public BatchPlanner(Settings settings) {
+        this.settings = settings;
+    }
+
+    public Settings settings() {
+        return settings;
+    }
+
+    /**
+     * Whether the plan at the index waits for the plan before it in its lane.
+     */
+    public boolean isQueued(int index) {
+        return index >= settings.parallelism();
+    }
+
+    /**
+     * The plan started once the plan at the index is finished, or null for the last plan of a lane.
+     */
+    public String next(List<String> sessionIds, int index) {
+        var next = index + settings.parallelism();
+        return next < sessionIds.size() ? sessionIds.get(next) : null;
+    }
+
+    /**
+     * The last plans of the lanes, the batch is finished once they all are.
+     */
+    public List<String> lastOfLanes(List<String> sessionIds) {
+        var lanes = Math.min(settings.parallelism(), sessionIds.size());
+        return sessionIds.subList(sessionIds.size() - lanes, sessionIds.size());
+    }
+
+    /**
+     * How long the batch may take, when each plan of its longest lane takes the plan timeout.
+     */
+    public Duration timeout(int size) {
+        var longestLane = (size + settings.parallelism() - 1) / settings.parallelism();
+        return settings.planTimeout().multipliedBy(Math.max(1, longestLane));
+    }
+}
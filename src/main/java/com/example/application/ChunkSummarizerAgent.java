@@ -0,0 +1,54 @@
+package com.example.application;
+
+import akka.javasdk.agent.Agent;
+import akka.javasdk.agent.MemoryProvider;
+import akka.javasdk.annotations.AgentDescription;
+import akka.javasdk.annotations.ComponentId;
+
+@ComponentId("chunk-summarizer-agent")
+@AgentDescription(
+        name = "Chunk Summarizer",
+        description = """
+          An agent that condenses a part of a long agent response, so that the final
+          summary fits the prompt budget of the model.
+        """
+)
+public class ChunkSummarizerAgent extends Agent {
+
+    /**
+     * @param maxWords the length the chunk should be condensed to
+     */
+    public record Request(String originalQuery, String chunk, int maxWords) {}
+
+    private final AgentModels models;
+
+    public ChunkSummarizerAgent(AgentModels models) {
+        this.models = models;
+    }
+
+    static String buildSystemMessage(Request request) {
+        return """
+      You will receive the original query and a part of a longer message generated by
+      another agent.
+
+      Your task is to condense that part to at most %d words. Keep every fact that is
+      relevant to the original query, such as places, dates, times and prices, and drop
+      the rest. You are not allowed to add any new information.
+
+      The part to condense will be provided between single quotes.
+
+      ORIGINAL USER QUERY:
+      %s
+    """.formatted(request.maxWords(), request.originalQuery());
+    }
+
+    public Effect<String> condense(Request request) {
+        return effects()
+                .model(models.model(ChunkSummarizerAgent.class))
+                // chunks are condensed in parallel, and are no part of the conversation
+                .memory(MemoryProvider.none())
+                .systemMessage(buildSystemMessage(request))
+                .userMessage("Condense the following part: '" + request.chunk() + "'")
+                .thenReply();
+    }
+}
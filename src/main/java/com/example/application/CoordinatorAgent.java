@@ -23,17 +23,25 @@ public class CoordinatorAgent extends Agent {
     public record Request(String message, AgentSelection agentSelection) {}
 
     private final AgentRegistry agentsRegistry;
+    private final AgentModels models;
 
-    public CoordinatorAgent(AgentRegistry agentsRegistry) {
+    public CoordinatorAgent(AgentRegistry agentsRegistry, AgentModels models) {
         this.agentsRegistry = agentsRegistry;
+        this.models = models;
     }
 
     private String buildSystemMessage(AgentSelection agentSelection) {
         var agents = agentSelection.agents().stream().map(agentsRegistry::agentInfo).toList();
+        // note: here we are not using the full list of agents, but a pre-selection
+        return buildSystemMessage(JsonSupport.encodeToString(agents));
+    }
+
+    static String buildSystemMessage(String agentsJson) {
         return """
       Your job is to analyse the user request and the list of agents and devise the
       best order in which the agents should be called in order to produce a
-      suitable answer to the user.
+      suitable answer to the user. Agents that don't need the outcome of another
+      agent will be called in parallel.
 
       You can find the list of existing agents below (in JSON format):
       %s
@@ -52,18 +60,20 @@ public class CoordinatorAgent extends Agent {
             {
               "agentId": "<the id of the agent>",
               "query: "<agent tailored query>",
+              "dependsOn": ["<the id of an agent that must be called before>"]
             }
          ]
        }
 
       The '<the id of the agent>' should be filled with the agent id.
       The '<agent tailored query>' should contain the agent tailored message.
+      The "dependsOn" array should only list the ids of the agents that must be called
+      before this agent. Leave it empty when the agent can be called independently.
       The order of the items inside the "steps" array should be the order of execution.
 
       Do not include any explanations or text outside of the JSON structure.
     """.stripIndent()
-                // note: here we are not using the full list of agents, but a pre-selection
-                .formatted(JsonSupport.encodeToString(agents));
+                .formatted(agentsJson);
     }
 
     public Effect<AgentPlan> createPlan(Request request) {
@@ -72,8 +82,10 @@ public class CoordinatorAgent extends Agent {
             var step = new AgentPlanStep(request.agentSelection.agents().getFirst(), request.message());
             return effects().reply(new AgentPlan(List.of(step)));
         } else {
+            var systemMessage = buildSystemMessage(request.agentSelection);
             return effects()
-                    .systemMessage(buildSystemMessage(request.agentSelection))
+                    .model(models.model(CoordinatorAgent.class, systemMessage + request.message(), true))
+                    .systemMessage(systemMessage)
                     .userMessage(request.message())
                     .responseAs(AgentPlan.class)
                     .thenReply();
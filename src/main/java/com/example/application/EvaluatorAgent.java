@@ -4,6 +4,7 @@ import akka.javasdk.agent.Agent;
 import akka.javasdk.annotations.AgentDescription;
 import akka.javasdk.annotations.ComponentId;
 import akka.javasdk.client.ComponentClient;
+import com.example.domain.Preferences;
 import com.example.entity.PreferencesEntity;
 
 import java.util.List;
@@ -20,18 +21,27 @@ import java.util.stream.Collectors;
 )
 public class EvaluatorAgent extends Agent {
 
+    /**
+     * @param preferences the user preferences to evaluate against, read through the local
+     *                    preferences cache when not provided
+     */
     public record EvaluationRequest(
             String userId,
             String originalRequest,
-            String finalAnswer
-    ) {}
+            String finalAnswer,
+            Preferences preferences
+    ) {
+        public EvaluationRequest(String userId, String originalRequest, String finalAnswer) {
+            this(userId, originalRequest, finalAnswer, null);
+        }
+    }
 
     public record EvaluationResult(
             int score,
             String feedback
     ) {}
 
-    private static final String SYSTEM_MESSAGE =
+    static final String EVALUATION_CRITERIA =
             """
             You are an evaluator agent that acts as an LLM judge. Your job is to evaluate
             the quality and appropriateness of AI-generated responses.
@@ -53,6 +63,11 @@ public class EvaluatorAgent extends Agent {
             IMPORTANT:
             - Any violations of user preferences should result in an incorrect evaluation since
               respecting user preferences is the most important criteria
+            """.stripIndent();
+
+    private static final String SYSTEM_MESSAGE =
+            EVALUATION_CRITERIA +
+            """
         
             Your response must be a single JSON object with the following fields:
             - "explanation": Specific feedback on what works well or deviations from preferences.
@@ -60,16 +75,22 @@ public class EvaluatorAgent extends Agent {
             """.stripIndent();
 
     private final ComponentClient componentClient;
+    private final PreferencesCache preferencesCache;
+    private final AgentModels models;
 
-    public EvaluatorAgent(ComponentClient componentClient) {
+    public EvaluatorAgent(ComponentClient componentClient, PreferencesCache preferencesCache, AgentModels models) {
         this.componentClient = componentClient;
+        this.preferencesCache = preferencesCache;
+        this.models = models;
     }
 
     public Effect<EvaluationResult> evaluate(EvaluationRequest request) {
-        var allPreferences = componentClient
-                .forEventSourcedEntity(request.userId())
-                .method(PreferencesEntity::getPreferences)
-                .invoke();
+        var allPreferences = request.preferences() != null
+                ? request.preferences()
+                : preferencesCache.getOrLoad(request.userId(), () -> componentClient
+                        .forEventSourcedEntity(request.userId())
+                        .method(PreferencesEntity::getPreferences)
+                        .invoke());
 
         String evaluationPrompt = buildEvaluationPrompt(
                 request.originalRequest(),
@@ -78,13 +99,14 @@ public class EvaluatorAgent extends Agent {
         );
 
         return effects()
+                .model(models.model(EvaluatorAgent.class, SYSTEM_MESSAGE + evaluationPrompt, true))
                 .systemMessage(SYSTEM_MESSAGE)
                 .userMessage(evaluationPrompt)
                 .responseAs(EvaluationResult.class)
                 .thenReply();
     }
 
-    private String buildEvaluationPrompt(
+    static String buildEvaluationPrompt(
             String originalRequest,
             String finalAnswer,
             List<String> preferences
@@ -0,0 +1,222 @@
+package com.example.application;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Hedged agent calls: when a call hasn't answered by the configured percentile of its recent
+ * latencies, a duplicate is sent, and the first valid answer wins. A failed or invalid answer is
+ * retried after a jittered exponential backoff, so that a slow or failing model costs one extra
+ * call rather than a whole step timeout and retry. The answers of the losing calls are ignored.
+ * While model calls wait for a token of the {@link LlmRateLimiter}, calls aren't hedged.
+ */
+public class HedgedCalls {
+
+    /**
+     * @param percentile   the percentile of the recent latencies of a call after which it is hedged
+     * @param minDelay     the shortest delay before hedging a call
+     * @param initialDelay the delay before hedging a call without enough latency samples
+     * @param maxAttempts  the maximum number of calls made, hedges and retries included
+     * @param backoffMin   the base delay before retrying a failed call
+     * @param backoffMax   the longest delay before retrying a failed call
+     */
+    public record Settings(
+            boolean enabled,
+            double percentile,
+            Duration minDelay,
+            Duration initialDelay,
+            int maxAttempts,
+            Duration backoffMin,
+            Duration backoffMax
+    ) {
+        public static Settings fromConfig(Config config) {
+            return new Settings(
+                    config.getBoolean("enabled"),
+                    config.getDouble("percentile"),
+                    config.getDuration("min-delay"),
+                    config.getDuration("initial-delay"),
+                    Math.max(1, config.getInt("max-attempts")),
+                    config.getDuration("backoff.min"),
+                    config.getDuration("backoff.max")
+            );
+        }
+    }
+
+    // marks the sessions of hedges and retries, see attemptSession
+    private static final String ATTEMPT_SESSION = "-attempt-";
+
+    // the latencies a hedging delay is computed from, per call
+    private static final int WINDOW_SIZE = 200;
+    private static final int MIN_SAMPLES = 20;
+
+    private static class LatencyWindow {
+        private final long[] nanos = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+
+        synchronized void add(long latency) {
+            nanos[next] = latency;
+            next = (next + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+        }
+
+        synchronized long percentile(double percentile, long orElse) {
+            if (count < MIN_SAMPLES) return orElse;
+            var sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+        }
+    }
+
+    private final Settings settings;
+    private final LlmRateLimiter rateLimiter;
+    private final Metrics metrics;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    public HedgedCalls(Settings settings, LlmRateLimiter rateLimiter, Metrics metrics) {
+        this.settings = settings;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param name  the call, e.g. the agent id, hedging delays and metrics are kept by name
+     * @param call  makes an attempt, given its number (starting at 1)
+     * @param valid whether an answer can be used, invalid answers are retried like failures
+     */
+    public <T> CompletionStage<T> call(String name, IntFunction<CompletionStage<T>> call, Predicate<T> valid) {
+        if (!settings.enabled()) {
+            return call.apply(1);
+        }
+        return new HedgedCall<>(name, call, valid).start();
+    }
+
+    /**
+     * The session an attempt of an agent call is made in. Hedges and retries get a session of
+     * their own, so that the exchanges of the losing attempts don't end up in the memory of the
+     * session, and can be told apart with {@link #isAttemptSession(String)}.
+     */
+    public static String attemptSession(String sessionId, int attempt) {
+        return attempt == 1 ? sessionId : sessionId + ATTEMPT_SESSION + attempt + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * Whether the session is the one of a hedge or retry.
+     */
+    public static boolean isAttemptSession(String sessionId) {
+        return sessionId != null && sessionId.contains(ATTEMPT_SESSION);
+    }
+
+    private class HedgedCall<T> {
+        private final String name;
+        private final IntFunction<CompletionStage<T>> call;
+        private final Predicate<T> valid;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private int attempts;
+        private int inFlight;
+
+        HedgedCall(String name, IntFunction<CompletionStage<T>> call, Predicate<T> valid) {
+            this.name = name;
+            this.call = call;
+            this.valid = valid;
+        }
+
+        CompletionStage<T> start() {
+            var window = latencies.computeIfAbsent(name, __ -> new LatencyWindow());
+            var delay = Math.max(
+                    settings.minDelay().toNanos(),
+                    window.percentile(settings.percentile(), settings.initialDelay().toNanos())
+            );
+            attempt();
+            hedgeAfter(delay);
+            return result;
+        }
+
+        private void hedgeAfter(long delay) {
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+                if (result.isDone()) return;
+                if (rateLimiter.saturated()) {
+                    // a duplicate would only add to the load that slows the calls down
+                    hedgeAfter(delay);
+                } else if (attempt()) {
+                    metrics.increment(Metrics.HEDGED_CALLS, 1, "call", name);
+                }
+            });
+        }
+
+        /**
+         * Makes another attempt, unless the call was answered or has no attempts left.
+         */
+        private boolean attempt() {
+            int attempt;
+            synchronized (this) {
+                if (result.isDone() || attempts >= settings.maxAttempts()) return false;
+                attempt = ++attempts;
+                inFlight++;
+            }
+            send(attempt);
+            return true;
+        }
+
+        private void send(int attempt) {
+            // measured from the call rather than the attempt, waiting for the rate limiter isn't model latency
+            var startedAt = System.nanoTime();
+            CompletionStage<T> answer;
+            try {
+                answer = call.apply(attempt);
+            } catch (RuntimeException e) {
+                answer = CompletableFuture.failedFuture(e);
+            }
+            answer.whenComplete((value, error) -> {
+                if (error == null && valid.test(value)) {
+                    latencies.get(name).add(System.nanoTime() - startedAt);
+                    if (result.complete(value) && attempt > 1) {
+                        metrics.increment(Metrics.HEDGED_CALLS_WON, 1, "call", name);
+                    }
+                    synchronized (this) {
+                        inFlight--;
+                    }
+                } else {
+                    failed(error != null ? error : new IllegalStateException("Invalid answer from " + name + ": " + value));
+                }
+            });
+        }
+
+        private void failed(Throwable error) {
+            int failedAttempts;
+            synchronized (this) {
+                inFlight--;
+                // another attempt may still answer
+                if (result.isDone() || inFlight > 0) return;
+                if (attempts >= settings.maxAttempts()) {
+                    result.completeExceptionally(error);
+                    return;
+                }
+                failedAttempts = attempts;
+            }
+            metrics.increment(Metrics.CALL_RETRIES, 1, "call", name);
+            CompletableFuture.delayedExecutor(backoff(failedAttempts).toNanos(), TimeUnit.NANOSECONDS).execute(this::attempt);
+        }
+
+        /**
+         * A random delay between the minimum and an exponentially growing bound ("full jitter"),
+         * so that calls that failed together aren't retried together.
+         */
+        private Duration backoff(int failedAttempts) {
+            var min = settings.backoffMin().toNanos();
+            var bound = Math.min(settings.backoffMax().toNanos(), min << Math.min(failedAttempts - 1, 20));
+            return Duration.ofNanos(ThreadLocalRandom.current().nextLong(min, Math.max(min, bound) + 1));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.application;
+
+import akka.Done;
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A token bucket shared by the agent calls of a node, which keeps the model calls under the rate
+ * limit of the provider. A call that finds the bucket empty is queued, in order, until a token is
+ * added, rather than failed: during a spike calls wait a little instead of all timing out.
+ */
+public class LlmRateLimiter {
+
+    /**
+     * @param callsPerSecond the rate at which tokens are added to the bucket
+     * @param burst          the maximum number of tokens in the bucket
+     */
+    public record Settings(boolean enabled, double callsPerSecond, int burst) {
+        public static Settings fromConfig(Config config) {
+            var callsPerSecond = config.getDouble("calls-per-second");
+            // tokens would never be added, and the wait for the next one is divided by the rate
+            if (!(callsPerSecond > 0)) {
+                throw new IllegalArgumentException("calls-per-second must be greater than 0, was " + callsPerSecond);
+            }
+            return new Settings(config.getBoolean("enabled"), callsPerSecond, Math.max(1, config.getInt("burst")));
+        }
+    }
+
+    private record Waiting(CompletableFuture<Done> permit, long queuedAt) {}
+
+    private final Settings settings;
+    private final Metrics metrics;
+    private final Queue<Waiting> waiting = new ArrayDeque<>();
+    private double tokens;
+    private long refilledAt;
+    private boolean drainScheduled;
+
+    public LlmRateLimiter(Settings settings, Metrics metrics) {
+        this.settings = settings;
+        this.metrics = metrics;
+        this.tokens = settings.burst();
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Makes the call once a token is available.
+     */
+    public <T> CompletionStage<T> call(Supplier<CompletionStage<T>> call) {
+        return acquire().thenCompose(__ -> call.get());
+    }
+
+    /**
+     * Completes when a token was taken from the bucket.
+     */
+    public CompletionStage<Done> acquire() {
+        if (!settings.enabled()) {
+            return CompletableFuture.completedFuture(Done.getInstance());
+        }
+        synchronized (this) {
+            refill();
+            if (waiting.isEmpty() && tokens >= 1) {
+                tokens--;
+                return CompletableFuture.completedFuture(Done.getInstance());
+            }
+            var permit = new CompletableFuture<Done>();
+            waiting.add(new Waiting(permit, System.nanoTime()));
+            scheduleDrain();
+            return permit;
+        }
+    }
+
+    /**
+     * Whether calls are waiting for a token.
+     */
+    public synchronized boolean saturated() {
+        return !waiting.isEmpty();
+    }
+
+    private void drain() {
+        var granted = new ArrayList<Waiting>();
+        synchronized (this) {
+            drainScheduled = false;
+            refill();
+            while (tokens >= 1 && !waiting.isEmpty()) {
+                tokens--;
+                granted.add(waiting.poll());
+            }
+            if (!waiting.isEmpty()) scheduleDrain();
+        }
+        // completed outside the lock, the calls run on the completing thread
+        granted.forEach(next -> {
+            metrics.recordDuration(Metrics.LLM_RATE_LIMIT_WAIT, Duration.ofNanos(System.nanoTime() - next.queuedAt()));
+            next.permit().complete(Done.getInstance());
+        });
+    }
+
+    // under the lock
+    private void scheduleDrain() {
+        if (drainScheduled) return;
+        drainScheduled = true;
+        var nanosToNextToken = (long) (Math.max(0, 1 - tokens) / settings.callsPerSecond() * 1e9);
+        CompletableFuture.delayedExecutor(nanosToNextToken, TimeUnit.NANOSECONDS).execute(this::drain);
+    }
+
+    // under the lock
+    private void refill() {
+        var now = System.nanoTime();
+        tokens = Math.min(settings.burst(), tokens + (now - refilledAt) / 1e9 * settings.callsPerSecond());
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.application;
+
+import akka.javasdk.agent.ModelProvider;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.time.Duration;
+
+/**
+ * Records the latency, failures and token usage of the calls an agent makes to a custom model in
+ * {@link Metrics}. Every model call, including those an agent makes again within one invocation,
+ * first takes a token of the {@link LlmRateLimiter} shared by the node. Failed calls aren't
+ * retried here: {@link HedgedCalls} retries the agent calls, and counts the retries.
+ */
+class MeteredModelProvider implements ModelProvider.Custom {
+
+    private final ModelProvider.Custom delegate;
+    private final String agentId;
+    private final LlmRateLimiter rateLimiter;
+    private final Metrics metrics;
+
+    MeteredModelProvider(ModelProvider.Custom delegate, String agentId, LlmRateLimiter rateLimiter, Metrics metrics) {
+        this.delegate = delegate;
+        this.agentId = agentId;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object createChatModel() {
+        var model = (ChatModel) delegate.createChatModel();
+        return new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest request) {
+                // the agent waits for the model anyway, it may as well wait for the token
+                rateLimiter.acquire().toCompletableFuture().join();
+                // measured once the token is taken, waiting for it isn't model latency
+                var start = System.nanoTime();
+                try {
+                    var response = model.chat(request);
+                    record(start, response);
+                    return response;
+                } catch (RuntimeException e) {
+                    recordFailure(start);
+                    throw e;
+                }
+            }
+        };
+    }
+
+    @Override
+    public Object createStreamingChatModel() {
+        var model = (StreamingChatModel) delegate.createStreamingChatModel();
+        return new StreamingChatModel() {
+            @Override
+            public void doChat(ChatRequest request, StreamingChatResponseHandler handler) {
+                rateLimiter.acquire().thenRun(() -> stream(model, request, handler));
+            }
+        };
+    }
+
+    private void stream(StreamingChatModel model, ChatRequest request, StreamingChatResponseHandler handler) {
+        var start = System.nanoTime();
+        model.chat(request, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                handler.onPartialResponse(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse response) {
+                record(start, response);
+                handler.onCompleteResponse(response);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                recordFailure(start);
+                handler.onError(error);
+            }
+        });
+    }
+
+    private void record(long start, ChatResponse response) {
+        metrics.recordDuration(Metrics.LLM_CALL_DURATION, Duration.ofNanos(System.nanoTime() - start), "agent", agentId);
+        var usage = response.tokenUsage();
+        if (usage != null) {
+            if (usage.inputTokenCount() != null) {
+                metrics.increment(Metrics.LLM_INPUT_TOKENS, usage.inputTokenCount(), "agent", agentId);
+            }
+            if (usage.outputTokenCount() != null) {
+                metrics.increment(Metrics.LLM_OUTPUT_TOKENS, usage.outputTokenCount(), "agent", agentId);
+            }
+        }
+    }
+
+    private void recordFailure(long start) {
+        metrics.recordDuration(Metrics.LLM_CALL_DURATION, Duration.ofNanos(System.nanoTime() - start), "agent", agentId);
+        metrics.increment(Metrics.LLM_CALL_FAILURES, 1, "agent", agentId);
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.application;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory counters, gauges and latency and size histograms of this service, rendered in the Prometheus text
+ * exposition format by the metrics endpoint. Series are identified by a metric name and
+ * label name/value pairs, and created on first use.
+ */
+public class Metrics {
+
+    public static final String STEP_DURATION = "trip_planner_workflow_step_duration_seconds";
+    public static final String STEP_FAILURES = "trip_planner_workflow_step_failures_total";
+    public static final String STATE_SIZE = "trip_planner_workflow_state_size_bytes";
+    public static final String AGENT_CALL_DURATION = "trip_planner_plan_agent_call_duration_seconds";
+    public static final String PREFERENCES_FETCH_DURATION = "trip_planner_preferences_fetch_duration_seconds";
+    public static final String LLM_CALL_DURATION = "trip_planner_llm_call_duration_seconds";
+    public static final String LLM_CALL_FAILURES = "trip_planner_llm_call_failures_total";
+    public static final String LLM_INPUT_TOKENS = "trip_planner_llm_input_tokens_total";
+    public static final String LLM_OUTPUT_TOKENS = "trip_planner_llm_output_tokens_total";
+    public static final String PLAN_REQUESTS_IN_FLIGHT = "trip_planner_plan_requests_in_flight";
+    public static final String COALESCED_PLAN_REQUESTS = "trip_planner_coalesced_plan_requests_total";
+    public static final String REEVALUATION_CANDIDATES = "trip_planner_reevaluation_candidates_total";
+    public static final String REEVALUATIONS_SKIPPED = "trip_planner_reevaluations_skipped_total";
+    public static final String REEVALUATIONS_MISSED = "trip_planner_reevaluations_missed_total";
+    public static final String SPECULATIONS = "trip_planner_speculative_calls_total";
+    public static final String SPECULATION_SAVED = "trip_planner_speculation_saved_seconds";
+    public static final String SPECULATION_CALL_DURATION = "trip_planner_speculative_call_duration_seconds";
+    public static final String HEDGED_CALLS = "trip_planner_hedged_calls_total";
+    public static final String HEDGED_CALLS_WON = "trip_planner_hedged_calls_won_total";
+    public static final String CALL_RETRIES = "trip_planner_call_retries_total";
+    public static final String MODEL_ROUTES = "trip_planner_model_routes_total";
+    public static final String RESPONSE_CACHE_LOOKUPS = "trip_planner_response_cache_lookups_total";
+    public static final String REJECTED_PLANS = "trip_planner_rejected_plans_total";
+    public static final String LLM_RATE_LIMIT_WAIT = "trip_planner_llm_rate_limit_wait_seconds";
+
+    // the suffix of the series with the highest value of a gauge
+    private static final String PEAK = "_peak";
+
+    private static final Map<String, String> HELP = Map.ofEntries(
+            Map.entry(STEP_DURATION, "Duration of plan-trip workflow steps, by step."),
+            Map.entry(STEP_FAILURES, "Failed plan-trip workflow step attempts, by step."),
+            Map.entry(STATE_SIZE, "Size of the plan-trip workflow state persisted after a plan step, as JSON."),
+            Map.entry(AGENT_CALL_DURATION, "Duration of the worker agent calls of the execute-plan step, by agent."),
+            Map.entry(PREFERENCES_FETCH_DURATION, "Duration of the user preferences read at the start of a plan."),
+            Map.entry(LLM_CALL_DURATION, "Duration of model calls, by agent."),
+            Map.entry(LLM_CALL_FAILURES, "Model calls that failed, by agent."),
+            Map.entry(LLM_INPUT_TOKENS, "Input tokens reported by the model, by agent."),
+            Map.entry(LLM_OUTPUT_TOKENS, "Output tokens reported by the model, by agent."),
+            Map.entry(PLAN_REQUESTS_IN_FLIGHT, "Plan requests received and not answered yet."),
+            Map.entry(PLAN_REQUESTS_IN_FLIGHT + PEAK, "Highest number of plan requests in flight at once, since the node started."),
+            Map.entry(COALESCED_PLAN_REQUESTS, "Plan requests attached to a plan started for a duplicate request."),
+            Map.entry(REEVALUATION_CANDIDATES, "Answered plans considered for re-evaluation when a preference is added."),
+            Map.entry(REEVALUATIONS_SKIPPED, "Answered plans not re-evaluated, because the new preference can't matter to them."),
+            Map.entry(REEVALUATIONS_MISSED, "Plans left out of a batch evaluation by the LLM judge, and evaluated singly."),
+            Map.entry(SPECULATIONS, "Worker calls made with the user query while the plan was created, by outcome (used or discarded)."),
+            Map.entry(SPECULATION_SAVED, "Latency saved by the speculative worker calls whose response was used, by agent."),
+            Map.entry(SPECULATION_CALL_DURATION, "Duration of the speculative worker calls, used or discarded, by agent."),
+            Map.entry(HEDGED_CALLS, "Agent calls duplicated because they didn't answer within their hedging delay, by call."),
+            Map.entry(HEDGED_CALLS_WON, "Agent calls answered by a hedge or retry rather than the first attempt, by call."),
+            Map.entry(CALL_RETRIES, "Agent calls retried after a failed or invalid answer, by call."),
+            Map.entry(MODEL_ROUTES, "Model calls sent to a model other than the default one, by agent and model configuration."),
+            Map.entry(RESPONSE_CACHE_LOOKUPS, "Lookups of the worker response cache, by agent and result (hit or miss)."),
+            Map.entry(REJECTED_PLANS, "Plans not started because too many plans were running, by limit (global or user)."),
+            Map.entry(LLM_RATE_LIMIT_WAIT, "Time agent calls waited for the rate limiter, for the calls that had to wait.")
+    );
+
+    // upper bounds in seconds, from a cache hit to a slow model answer
+    private static final double[] LATENCY_BUCKETS =
+            {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+    // upper bounds in bytes, from a few inline answers to the size of a persisted state that hurts
+    private static final double[] SIZE_BUCKETS =
+            {1024, 4096, 16384, 65536, 262144, 1048576, 4194304};
+
+    private record Series(String name, String labels) {}
+
+    private static class Gauge {
+        private final AtomicLong value = new AtomicLong();
+        private final AtomicLong peak = new AtomicLong();
+
+        void add(long delta) {
+            var current = value.addAndGet(delta);
+            peak.accumulateAndGet(current, Math::max);
+        }
+    }
+
+    private static class Histogram {
+        private final double[] bounds;
+        private final LongAdder[] buckets;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        Histogram(double[] bounds) {
+            this.bounds = bounds;
+            this.buckets = new LongAdder[bounds.length];
+            Arrays.setAll(buckets, i -> new LongAdder());
+        }
+
+        void observe(double value) {
+            for (int i = 0; i < bounds.length; i++) {
+                if (value <= bounds[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sum.add(value);
+        }
+    }
+
+    private final Map<Series, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<Series, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<Series, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * @param labels label names and values, alternating
+     */
+    public void increment(String name, long amount, String... labels) {
+        counters.computeIfAbsent(new Series(name, labels(labels)), __ -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Moves a gauge up or down. The highest value it reached is rendered as a gauge of its own,
+     * with the {@code _peak} suffix, so that a short spike isn't missed between two scrapes.
+     *
+     * @param labels label names and values, alternating
+     */
+    public void adjust(String name, long delta, String... labels) {
+        gauges.computeIfAbsent(new Series(name, labels(labels)), __ -> new Gauge()).add(delta);
+    }
+
+    /**
+     * @param labels label names and values, alternating
+     */
+    public void recordDuration(String name, Duration duration, String... labels) {
+        histograms
+                .computeIfAbsent(new Series(name, labels(labels)), __ -> new Histogram(LATENCY_BUCKETS))
+                .observe(duration.toNanos() / 1e9);
+    }
+
+    /**
+     * @param labels label names and values, alternating
+     */
+    public void recordSize(String name, long bytes, String... labels) {
+        histograms
+                .computeIfAbsent(new Series(name, labels(labels)), __ -> new Histogram(SIZE_BUCKETS))
+                .observe(bytes);
+    }
+
+    /**
+     * All series in the Prometheus text exposition format, grouped by metric name.
+     */
+    public String scrape() {
+        var byName = new TreeMap<String, StringBuilder>();
+        counters.forEach((series, counter) ->
+                family(byName, series.name(), "counter")
+                        .append(series.name()).append(braced(series.labels())).append(' ')
+                        .append(counter.sum()).append('\n')
+        );
+        gauges.forEach((series, gauge) -> {
+            family(byName, series.name(), "gauge")
+                    .append(series.name()).append(braced(series.labels())).append(' ')
+                    .append(gauge.value.get()).append('\n');
+            family(byName, series.name() + PEAK, "gauge")
+                    .append(series.name()).append(PEAK).append(braced(series.labels())).append(' ')
+                    .append(gauge.peak.get()).append('\n');
+        });
+        histograms.forEach((series, histogram) -> {
+            var out = family(byName, series.name(), "histogram");
+            var separator = series.labels().isEmpty() ? "" : ",";
+            long cumulative = 0;
+            for (int i = 0; i < histogram.bounds.length; i++) {
+                cumulative += histogram.buckets[i].sum();
+                out.append(series.name()).append("_bucket{").append(series.labels()).append(separator)
+                        .append("le=\"").append(histogram.bounds[i]).append("\"} ").append(cumulative).append('\n');
+            }
+            // read once, so that the +Inf bucket and the count agree
+            var count = histogram.count.sum();
+            out.append(series.name()).append("_bucket{").append(series.labels()).append(separator)
+                    .append("le=\"+Inf\"} ").append(count).append('\n');
+            out.append(series.name()).append("_sum").append(braced(series.labels())).append(' ')
+                    .append(histogram.sum.sum()).append('\n');
+            out.append(series.name()).append("_count").append(braced(series.labels())).append(' ')
+                    .append(count).append('\n');
+        });
+        var text = new StringBuilder();
+        byName.values().forEach(text::append);
+        return text.toString();
+    }
+
+    private static StringBuilder family(Map<String, StringBuilder> byName, String name, String type) {
+        return byName.computeIfAbsent(name, __ -> {
+            var header = new StringBuilder();
+            if (HELP.containsKey(name)) {
+                header.append("# HELP ").append(name).append(' ').append(HELP.get(name)).append('\n');
+            }
+            return header.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        });
+    }
+
+    private static String braced(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs: " + Arrays.toString(labels));
+        }
+        var rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) rendered.append(',');
+            rendered.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return rendered.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
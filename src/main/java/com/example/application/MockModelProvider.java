@@ -0,0 +1,254 @@
+package com.example.application;
+
+import akka.javasdk.JsonSupport;
+import akka.javasdk.agent.ModelProvider;
+import com.example.domain.AgentPlan;
+import com.example.domain.AgentPlanStep;
+import com.example.domain.AgentSelection;
+import com.typesafe.config.Config;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * A local, deterministic model used to measure the service's own overhead without any network.
+ * It recognizes the prompts of the agents of this service and replies with schema-valid JSON for
+ * agent selections, plans and evaluations, and with generated text otherwise, after a latency
+ * drawn from the configured distributions. Enabled with {@code akka.javasdk.agent.model-provider = mock}.
+ */
+public class MockModelProvider implements ModelProvider.Custom {
+
+    /**
+     * A latency distribution: "fixed" (always the median), "uniform" (between min and max) or
+     * "lognormal" (with the given median and 99th percentile).
+     */
+    public record Latency(String distribution, Duration min, Duration median, Duration p99, Duration max) {
+
+        // the 99th percentile of the standard normal distribution
+        private static final double Z_99 = 2.326;
+
+        public static Latency fromConfig(Config config) {
+            var median = config.getDuration("median");
+            return new Latency(
+                    config.getString("distribution"),
+                    config.hasPath("min") ? config.getDuration("min") : Duration.ZERO,
+                    median,
+                    config.hasPath("p99") ? config.getDuration("p99") : median,
+                    config.hasPath("max") ? config.getDuration("max") : median.multipliedBy(2)
+            );
+        }
+
+        public Duration sample(Random random) {
+            return switch (distribution) {
+                case "fixed" -> median;
+                case "uniform" -> Duration.ofNanos(
+                        min.toNanos() + (long) (random.nextDouble() * (max.toNanos() - min.toNanos()))
+                );
+                case "lognormal" -> {
+                    var mu = Math.log(median.toNanos());
+                    var sigma = (Math.log(p99.toNanos()) - mu) / Z_99;
+                    yield Duration.ofNanos((long) Math.exp(mu + sigma * random.nextGaussian()));
+                }
+                default -> throw new IllegalArgumentException("Unknown latency distribution: " + distribution);
+            };
+        }
+    }
+
+    private enum Kind {SELECTION, PLAN, EVALUATION, TEXT}
+
+    private static final Pattern AGENT_ID = Pattern.compile("\"id\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern SESSION_ID = Pattern.compile("SESSION ID: (\\S+)");
+
+    private final Latency selectionLatency;
+    private final Latency planLatency;
+    private final Latency evaluationLatency;
+    private final Latency textLatency;
+    private final int textLength;
+    private final Random random;
+
+    public MockModelProvider(
+            Latency selectionLatency,
+            Latency planLatency,
+            Latency evaluationLatency,
+            Latency textLatency,
+            int textLength,
+            long seed
+    ) {
+        this.selectionLatency = selectionLatency;
+        this.planLatency = planLatency;
+        this.evaluationLatency = evaluationLatency;
+        this.textLatency = textLatency;
+        this.textLength = textLength;
+        this.random = new Random(seed);
+    }
+
+    public static MockModelProvider fromConfig(Config config) {
+        var latency = Latency.fromConfig(config.getConfig("latency"));
+        return new MockModelProvider(
+                latencyOrDefault(config, "selection-latency", latency),
+                latencyOrDefault(config, "plan-latency", latency),
+                latencyOrDefault(config, "evaluation-latency", latency),
+                latencyOrDefault(config, "text-latency", latency),
+                config.getInt("text-length"),
+                config.getLong("seed")
+        );
+    }
+
+    private static Latency latencyOrDefault(Config config, String path, Latency defaultLatency) {
+        return config.hasPath(path) ? Latency.fromConfig(config.getConfig(path)) : defaultLatency;
+    }
+
+    @Override
+    public Object createChatModel() {
+        return new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest request) {
+                var kind = kind(request);
+                sleep(latency(kind));
+                return response(request, respond(kind, request));
+            }
+        };
+    }
+
+    @Override
+    public Object createStreamingChatModel() {
+        return new StreamingChatModel() {
+            @Override
+            public void doChat(ChatRequest request, StreamingChatResponseHandler handler) {
+                var kind = kind(request);
+                var text = respond(kind, request);
+                var tokens = text.split("(?<= )");
+                // the latency is spread over the tokens, the first one arriving after a token's share
+                var perToken = latency(kind).dividedBy(tokens.length + 1);
+                try {
+                    for (var token : tokens) {
+                        sleep(perToken);
+                        handler.onPartialResponse(token);
+                    }
+                    handler.onCompleteResponse(response(request, text));
+                } catch (RuntimeException e) {
+                    handler.onError(e);
+                }
+            }
+        };
+    }
+
+    private Duration latency(Kind kind) {
+        var latency = switch (kind) {
+            case SELECTION -> selectionLatency;
+            case PLAN -> planLatency;
+            case EVALUATION -> evaluationLatency;
+            case TEXT -> textLatency;
+        };
+        synchronized (random) {
+            return latency.sample(random);
+        }
+    }
+
+    private static Kind kind(ChatRequest request) {
+        var systemMessage = systemMessage(request);
+        if (systemMessage.contains("\"agents\": []")) return Kind.SELECTION;
+        else if (systemMessage.contains("\"steps\"")) return Kind.PLAN;
+        else if (systemMessage.contains("LLM judge")) return Kind.EVALUATION;
+        else return Kind.TEXT;
+    }
+
+    private String respond(Kind kind, ChatRequest request) {
+        var systemMessage = systemMessage(request);
+        var userMessage = userMessage(request);
+        return switch (kind) {
+            // every listed agent is selected, and called with the user's query
+            case SELECTION -> JsonSupport.encodeToString(new AgentSelection(agentIds(systemMessage)));
+            case PLAN -> JsonSupport.encodeToString(new AgentPlan(
+                    agentIds(systemMessage).stream().map(agentId -> new AgentPlanStep(agentId, userMessage)).toList()
+            ));
+            case EVALUATION -> {
+                var sessionIds = matches(SESSION_ID, userMessage);
+                if (sessionIds.isEmpty()) {
+                    yield JsonSupport.encodeToString(new EvaluatorAgent.EvaluationResult(1, "Mock evaluation"));
+                } else {
+                    yield JsonSupport.encodeToString(new BatchEvaluatorAgent.BatchEvaluationResult(
+                            sessionIds.stream()
+                                    .map(sessionId -> new BatchEvaluatorAgent.PlanEvaluation(sessionId, 1, "Mock evaluation"))
+                                    .toList()
+                    ));
+                }
+            }
+            case TEXT -> text(userMessage);
+        };
+    }
+
+    private String text(String userMessage) {
+        var text = new StringBuilder("Mock answer to: ")
+                .append(userMessage, 0, Math.min(userMessage.length(), 80));
+        while (text.length() < textLength) {
+            text.append(" lorem ipsum");
+        }
+        return text.toString();
+    }
+
+    private static List<String> agentIds(String systemMessage) {
+        return matches(AGENT_ID, systemMessage);
+    }
+
+    private static List<String> matches(Pattern pattern, String text) {
+        var matcher = pattern.matcher(text);
+        var found = new LinkedHashSet<String>();
+        while (matcher.find()) {
+            found.add(matcher.group(1));
+        }
+        return new ArrayList<>(found);
+    }
+
+    private static String systemMessage(ChatRequest request) {
+        return request.messages().stream()
+                .filter(message -> message instanceof SystemMessage)
+                .map(message -> ((SystemMessage) message).text())
+                .reduce("", (a, b) -> a + b);
+    }
+
+    private static String userMessage(ChatRequest request) {
+        // the last user message is the current one, earlier ones come from the session memory
+        String userMessage = "";
+        for (ChatMessage message : request.messages()) {
+            if (message instanceof UserMessage user && user.hasSingleText()) {
+                userMessage = user.singleText();
+            }
+        }
+        return userMessage;
+    }
+
+    private static ChatResponse response(ChatRequest request, String text) {
+        var inputLength = request.messages().stream().mapToInt(message -> message.toString().length()).sum();
+        return ChatResponse.builder()
+                .aiMessage(AiMessage.from(text))
+                // roughly four characters per token
+                .tokenUsage(new TokenUsage(inputLength / 4, text.length() / 4))
+                .finishReason(FinishReason.STOP)
+                .build();
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.application;
+
+import akka.javasdk.agent.ModelProvider;
+import com.typesafe.config.Config;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * An OpenAI model built from a model configuration in the format of
+ * {@code akka.javasdk.agent.openai}, as a custom provider so that its calls can be recorded in
+ * {@link Metrics} like those of the mock. The model itself doesn't retry: the agent calls are
+ * retried by {@link HedgedCalls}, which counts the retries, and retries at both levels would
+ * multiply the calls made.
+ */
+public class OpenAiModelProvider implements ModelProvider.Custom {
+
+    /**
+     * @param baseUrl the API endpoint, the default one of OpenAI when empty
+     * @param timeout the time a model call may take, the client's default when empty
+     */
+    public record Settings(
+            String apiKey,
+            String modelName,
+            Optional<String> baseUrl,
+            Optional<Double> temperature,
+            Optional<Double> topP,
+            Optional<Integer> maxTokens,
+            Optional<Duration> timeout
+    ) {
+        public static Settings fromConfig(Config config) {
+            return new Settings(
+                    config.getString("api-key"),
+                    config.getString("model-name"),
+                    optional(config, "base-url").map(config::getString).filter(url -> !url.isBlank()),
+                    optional(config, "temperature").map(config::getDouble).filter(value -> !value.isNaN()),
+                    optional(config, "top-p").map(config::getDouble).filter(value -> !value.isNaN()),
+                    optional(config, "max-tokens").map(config::getInt).filter(value -> value > 0),
+                    optional(config, "response-timeout").map(config::getDuration)
+            );
+        }
+
+        private static Optional<String> optional(Config config, String path) {
+            return config.hasPath(path) ? Optional.of(path) : Optional.empty();
+        }
+    }
+
+    private final Settings settings;
+
+    public OpenAiModelProvider(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Whether the model configuration at the path is one of an OpenAI model.
+     */
+    static boolean isOpenAi(Config config, String path) {
+        return path.equals("akka.javasdk.agent.openai") ||
+                (config.hasPath(path + ".provider") && config.getString(path + ".provider").equals("openai"));
+    }
+
+    @Override
+    public Object createChatModel() {
+        var builder = OpenAiChatModel.builder()
+                .apiKey(settings.apiKey())
+                .modelName(settings.modelName())
+                .maxRetries(0);
+        settings.baseUrl().ifPresent(builder::baseUrl);
+        settings.temperature().ifPresent(builder::temperature);
+        settings.topP().ifPresent(builder::topP);
+        settings.maxTokens().ifPresent(builder::maxTokens);
+        settings.timeout().ifPresent(builder::timeout);
+        return builder.build();
+    }
+
+    @Override
+    public Object createStreamingChatModel() {
+        var builder = OpenAiStreamingChatModel.builder()
+                .apiKey(settings.apiKey())
+                .modelName(settings.modelName());
+        settings.baseUrl().ifPresent(builder::baseUrl);
+        settings.temperature().ifPresent(builder::temperature);
+        settings.topP().ifPresent(builder::topP);
+        settings.maxTokens().ifPresent(builder::maxTokens);
+        settings.timeout().ifPresent(builder::timeout);
+        return builder.build();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.application;
+
+import com.typesafe.config.Config;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * Attaches duplicate plan requests, such as client retries and double submissions, to the plan
+ * that was started for the first of them. Requests are duplicates when they come from the same
+ * user, with the same normalized message and preferences version, within the configured window.
+ * Plans are tracked in memory, so only duplicates that reach the same node are coalesced.
+ */
+public class PlanCoalescer {
+
+    /**
+     * @param coalesced whether the request was attached to a plan started before
+     */
+    public record Attempt(CompletionStage<String> sessionId, boolean coalesced) {}
+
+    // plans are not scoped to the agent catalog
+    private static final String NO_FINGERPRINT = "";
+
+    private final boolean enabled;
+    private final QueryCache<CompletionStage<String>> plans;
+
+    public PlanCoalescer(boolean enabled, QueryCache<CompletionStage<String>> plans) {
+        this.enabled = enabled;
+        this.plans = plans;
+    }
+
+    public static PlanCoalescer fromConfig(Config config) {
+        return new PlanCoalescer(
+                config.getBoolean("enabled"),
+                new QueryCache<>(config.getInt("max-entries"), config.getDuration("window"))
+        );
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a plan, unless a duplicate was started within the window.
+     *
+     * @param start starts the plan and completes with its session id
+     * @return the session id of the plan the request is attached to
+     */
+    public Attempt startOnce(String userId, String message, int preferencesVersion, Supplier<CompletionStage<String>> start) {
+        var key = userId + "|" + preferencesVersion + "|" + QueryCache.normalize(message);
+        synchronized (this) {
+            var started = plans.get(NO_FINGERPRINT, key);
+            if (started.isPresent()) {
+                return new Attempt(started.get(), true);
+            }
+            var sessionId = start.get();
+            plans.put(NO_FINGERPRINT, key, sessionId);
+            // a failed start must not be handed to the duplicates that come after it
+            sessionId.whenComplete((__, error) -> {
+                if (error != null) plans.invalidate(key);
+            });
+            return new Attempt(sessionId, false);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.application;
 
 import akka.Done;
+import akka.javasdk.JsonSupport;
+import akka.javasdk.agent.AgentRegistry;
 import akka.javasdk.annotations.ComponentId;
 import akka.javasdk.annotations.StepName;
 import akka.javasdk.client.ComponentClient;
@@ -9,13 +11,33 @@ import akka.javasdk.workflow.Workflow;
 import com.example.domain.AgentPlan;
 import com.example.domain.AgentPlanStep;
 import com.example.domain.AgentRequest;
+import com.example.domain.AgentResponse;
 import com.example.domain.AgentSelection;
+import com.example.domain.Preferences;
+import com.example.entity.PreferencesEntity;
+import com.typesafe.config.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static java.time.Duration.ofMinutes;
 import static java.time.Duration.ofSeconds;
 
 @ComponentId("plan-trip")
@@ -23,40 +45,96 @@ public class PlanTripWorkflow extends Workflow<PlanTripWorkflow.State> {
 
     private static final Logger logger = LoggerFactory.getLogger(PlanTripWorkflow.class);
 
-    public record Request(String userId, String message) {}
+    /**
+     * @param streamSummary when set, the summary is not produced by the workflow itself but
+     *                      streamed to the client (see {@link #completeSummary(String)})
+     * @param selection     the agents selected for the query beforehand, or null to select them
+     * @param preferences   the preferences of the user read beforehand, or null to read them
+     * @param queued        whether the plan, part of a batch, waits for {@link #startQueued()}
+     * @param nextSessionId the plan of the batch started once this one is finished, or null
+     */
+    public record Request(
+            String userId,
+            String message,
+            boolean streamSummary,
+            AgentSelection selection,
+            Preferences preferences,
+            boolean queued,
+            String nextSessionId
+    ) {
+        public Request(String userId, String message, boolean streamSummary) {
+            this(userId, message, streamSummary, null, null, false, null);
+        }
+
+        public Request(String userId, String message) {
+            this(userId, message, false);
+        }
+    }
 
     enum Status {
+        QUEUED,
         STARTED,
+        AWAITING_SUMMARY,
         COMPLETED,
         FAILED,
     }
 
+    /**
+     * @param rerunning whether the plan, answered before, is being answered again after the
+     *                  preferences of the user changed
+     */
     public record State(
             String userId,
             String userQuery,
             AgentPlan plan,
+            AgentPlan executedPlan,
             String finalAnswer,
-            Map<String, String> agentResponses,
-            Status status
+            Map<String, AgentResponse> agentResponses,
+            Status status,
+            String currentStep,
+            boolean streamSummary,
+            Preferences preferences,
+            Instant createdAt,
+            BatchPlan batch,
+            boolean rerunning
     ) {
-        public static State init(String userId, String query) {
-            return new State(userId, query, new AgentPlan(), "", new HashMap<>(), Status.STARTED);
+        public static State init(String userId, String query, boolean streamSummary, Instant createdAt) {
+            return new State(userId, query, new AgentPlan(), new AgentPlan(), "", new HashMap<>(), Status.STARTED, "select-agents", streamSummary, null, createdAt, null, false);
+        }
+
+        /**
+         * A fresh state for answering the same query again, keeping its creation time.
+         */
+        public State restart() {
+            return new State(userId, userQuery, new AgentPlan(), new AgentPlan(), "", new HashMap<>(), Status.STARTED, "select-agents", false, null, createdAt, null, true);
+        }
+
+        /**
+         * A state for answering the query again with the same plan, in which only the given
+         * steps are executed again and the responses of the other steps are kept.
+         */
+        public State rerun(AgentPlan steps) {
+            var keptResponses = new LinkedHashMap<>(agentResponses);
+            steps.steps().forEach(step -> keptResponses.remove(step.agentId()));
+            return new State(userId, userQuery, steps, executedPlan, "", keptResponses, Status.STARTED, "rerun-plan", false, preferences, createdAt, batch, true);
         }
 
         public State withFinalAnswer(String answer) {
-            return new State(userId, userQuery, plan, answer, agentResponses, status);
+            return new State(userId, userQuery, plan, executedPlan, answer, agentResponses, status, currentStep, streamSummary, preferences, createdAt, batch, rerunning);
         }
 
-        public State addAgentResponse(String response) {
-            // when we add a response, we always do it for the agent at the head of the plan queue
-            // therefore we remove it from the queue and proceed
-            var agentId = plan.steps().removeFirst().agentId();
-            agentResponses.put(agentId, response);
-            return this;
+        public State addAgentResponses(Map<String, AgentResponse> responses) {
+            // executed steps are removed from the plan, the remaining ones are still pending
+            var remainingSteps = plan.steps().stream()
+                    .filter(step -> !responses.containsKey(step.agentId()))
+                    .collect(Collectors.toCollection(ArrayList::new));
+            var newResponses = new LinkedHashMap<>(agentResponses);
+            newResponses.putAll(responses);
+            return new State(userId, userQuery, new AgentPlan(remainingSteps), executedPlan, finalAnswer, newResponses, status, currentStep, streamSummary, preferences, createdAt, batch, rerunning);
         }
 
-        public AgentPlanStep nextStepPlan() {
-            return plan.steps().getFirst();
+        public List<AgentPlanStep> readySteps() {
+            return plan.readySteps();
         }
 
         public boolean hasMoreSteps() {
@@ -64,28 +142,156 @@ public class PlanTripWorkflow extends Workflow<PlanTripWorkflow.State> {
         }
 
         public State withPlan(AgentPlan plan) {
-            return new State(userId, userQuery, plan, finalAnswer, agentResponses, Status.STARTED);
+            return new State(userId, userQuery, plan, plan, finalAnswer, agentResponses, Status.STARTED, currentStep, streamSummary, preferences, createdAt, batch, rerunning);
+        }
+
+        public State withPreferences(Preferences preferences) {
+            return new State(userId, userQuery, plan, executedPlan, finalAnswer, agentResponses, status, currentStep, streamSummary, preferences, createdAt, batch, rerunning);
+        }
+
+        public State inStep(String step) {
+            return new State(userId, userQuery, plan, executedPlan, finalAnswer, agentResponses, status, step, streamSummary, preferences, createdAt, batch, rerunning);
+        }
+
+        public State awaitingSummary() {
+            return new State(userId, userQuery, plan, executedPlan, finalAnswer, agentResponses, Status.AWAITING_SUMMARY, "summarize", streamSummary, preferences, createdAt, batch, rerunning);
+        }
+
+        public State withoutSummaryStreaming() {
+            return new State(userId, userQuery, plan, executedPlan, finalAnswer, agentResponses, Status.STARTED, currentStep, false, preferences, createdAt, batch, rerunning);
         }
 
         public State complete() {
-            return new State(userId, userQuery, plan, finalAnswer, agentResponses, Status.COMPLETED);
+            return new State(userId, userQuery, plan, executedPlan, finalAnswer, agentResponses, Status.COMPLETED, currentStep, streamSummary, preferences, createdAt, batch, false);
+        }
+
+        public State inBatch(BatchPlan batch) {
+            return new State(userId, userQuery, plan, executedPlan, finalAnswer, agentResponses, status, currentStep, streamSummary, preferences, createdAt, batch, rerunning);
+        }
+
+        public State queued() {
+            return new State(userId, userQuery, plan, executedPlan, finalAnswer, agentResponses, Status.QUEUED, "queued", streamSummary, preferences, createdAt, batch, rerunning);
+        }
+
+        public State dequeued() {
+            return new State(userId, userQuery, plan, executedPlan, finalAnswer, agentResponses, Status.STARTED, "create-plan", streamSummary, preferences, createdAt, batch, rerunning);
         }
 
         public State failed() {
-            return new State(userId, userQuery, plan, finalAnswer, agentResponses, Status.FAILED);
+            return new State(userId, userQuery, plan, executedPlan, finalAnswer, agentResponses, Status.FAILED, currentStep, streamSummary, preferences, createdAt, batch, false);
         }
     }
 
-    private final ComponentClient componentClient;
+    /**
+     * The part a plan plays in a batch of queries.
+     *
+     * @param selection     the agents selected for the whole batch, a queued plan is made with them
+     *                      once it is started; when empty, each plan selects its own
+     * @param nextSessionId the plan of the batch started once this one is finished, or null
+     */
+    public record BatchPlan(AgentSelection selection, String nextSessionId) {}
+
+    /**
+     * @param incremental      whether a rerun keeps the agent selection and plan of the previous run
+     * @param preferenceAgents the worker agents whose answers depend on the user preferences, the
+     *                         only ones called again by an incremental rerun (with the steps
+     *                         depending on them)
+     */
+    public record RerunSettings(boolean incremental, Set<String> preferenceAgents) {
+        public static RerunSettings fromConfig(Config config) {
+            return new RerunSettings(config.getBoolean("incremental"), Set.copyOf(config.getStringList("preference-agents")));
+        }
+    }
+
+    /**
+     * @param enabled       whether the selected agents are called with the user query while the
+     *                      plan is created
+     * @param minSimilarity how similar (the share of common words) the query of a planned step must
+     *                      be to the user query for the speculative response to be used
+     */
+    public record SpeculationSettings(boolean enabled, double minSimilarity) {
+        public static SpeculationSettings fromConfig(Config config) {
+            return new SpeculationSettings(config.getBoolean("enabled"), config.getDouble("min-similarity"));
+        }
+
+        public boolean equivalent(String userQuery, String plannedQuery) {
+            var userWords = Set.copyOf(Arrays.asList(QueryCache.normalize(userQuery).split(" ")));
+            var plannedWords = Set.copyOf(Arrays.asList(QueryCache.normalize(plannedQuery).split(" ")));
+            var common = userWords.stream().filter(plannedWords::contains).count();
+            var all = userWords.size() + plannedWords.size() - common;
+            return all > 0 && (double) common / all >= minSimilarity;
+        }
+    }
+
+    /**
+     * A worker call made with the user query before the plan was known.
+     */
+    private record Speculation(long startedAt, CompletableFuture<SpeculativeResponse> response) {}
 
-    public PlanTripWorkflow(ComponentClient componentClient) {
+    private record SpeculativeResponse(String text, long completedAt) {}
+
+    // how long a paused workflow waits for a streaming client to report the summary back
+    private static final Duration SUMMARY_STREAM_TIMEOUT = ofMinutes(2);
+
+    /**
+     * The input of a summary streamed by a client, large responses still have to be resolved
+     * from the {@link ResponseStore}.
+     */
+    public record PendingSummary(String originalQuery, List<AgentResponse> agentResponses) {}
+
+    private final ComponentClient componentClient;
+    private final AgentRegistry agentRegistry;
+    private final PlanningCache planningCache;
+    private final ResponseStore responseStore;
+    private final SummaryBudget summaryBudget;
+    private final RerunSettings rerunSettings;
+    private final SpeculationSettings speculationSettings;
+    private final HedgedCalls hedgedCalls;
+    private final ResponseCache responseCache;
+    private final Metrics metrics;
+
+    public PlanTripWorkflow(
+            ComponentClient componentClient,
+            AgentRegistry agentRegistry,
+            PlanningCache planningCache,
+            ResponseStore.Settings responseStoreSettings,
+            SummaryBudget.Settings summaryBudgetSettings,
+            RerunSettings rerunSettings,
+            SpeculationSettings speculationSettings,
+            HedgedCalls hedgedCalls,
+            ResponseCache responseCache,
+            Metrics metrics
+    ) {
         this.componentClient = componentClient;
+        this.agentRegistry = agentRegistry;
+        this.planningCache = planningCache;
+        this.responseStore = new ResponseStore(componentClient, responseStoreSettings);
+        this.summaryBudget = new SummaryBudget(componentClient, summaryBudgetSettings);
+        this.rerunSettings = rerunSettings;
+        this.speculationSettings = speculationSettings;
+        this.hedgedCalls = hedgedCalls;
+        this.responseCache = responseCache;
+        this.metrics = metrics;
     }
 
     public Effect<Done> start(Request request) {
         if (currentState() == null) {
+            var state = State.init(request.userId(), request.message(), request.streamSummary(), Instant.now());
+            if (request.selection() != null && request.preferences() != null) {
+                // selected and read for a batch of queries, only the plan is made for this one
+                var batched = state
+                        .withPreferences(request.preferences())
+                        .inBatch(new BatchPlan(request.selection(), request.nextSessionId()));
+                if (request.queued()) {
+                    return effects()
+                            .updateState(batched.queued())
+                            .pause()
+                            .thenReply(Done.getInstance());
+                }
+                return startBatched(batched);
+            }
             return effects()
-                    .updateState(State.init(request.userId(), request.message()))
+                    .updateState(state)
                     .transitionTo(PlanTripWorkflow::selectAgentsStep)
                     .thenReply(Done.getInstance());
         } else {
@@ -94,15 +300,107 @@ public class PlanTripWorkflow extends Workflow<PlanTripWorkflow.State> {
         }
     }
 
+    /**
+     * Starts a queued plan of a batch, once the plan before it in its lane is finished (see
+     * {@link BatchConsumer}). Does nothing for a plan that isn't queued anymore, so that it can
+     * be called again for the same plan.
+     */
+    public Effect<Done> startQueued() {
+        if (currentState() == null) {
+            return effects()
+                    .error("Workflow '" + commandContext().workflowId() + "' has not been started");
+        } else if (currentState().status() != Status.QUEUED) {
+            return effects().reply(Done.getInstance());
+        } else {
+            return startBatched(currentState().dequeued());
+        }
+    }
+
+    /**
+     * Makes the plan of a query of a batch with the agents selected for the batch. When none
+     * were, the agents are selected for this query alone; it still runs in its lane.
+     */
+    private Effect<Done> startBatched(State state) {
+        var selection = state.batch().selection();
+        if (selection.agents().isEmpty()) {
+            return effects()
+                    .updateState(state.inStep("select-agents"))
+                    .transitionTo(PlanTripWorkflow::selectAgentsStep)
+                    .thenReply(Done.getInstance());
+        }
+        return effects()
+                .updateState(state.inStep("create-plan"))
+                .transitionTo(PlanTripWorkflow::createPlanStep)
+                .withInput(selection)
+                .thenReply(Done.getInstance());
+    }
+
+    /**
+     * Answers the query again, after the preferences of the user changed. An incremental rerun
+     * only calls the agents that use preferences again, and summarizes; otherwise, or when none
+     * of the planned agents uses preferences, the whole plan is made again.
+     */
     public Effect<Done> runAgain() {
-        if (currentState() != null) {
+        if (currentState() == null) {
             return effects()
-                    .updateState(State.init(currentState().userId(), currentState().userQuery()))
+                    .error("Workflow '" + commandContext().workflowId() + "' has not been started");
+        }
+
+        // states persisted before plans were kept have no executed plan, and are planned again
+        var executedPlan = currentState().executedPlan() != null ? currentState().executedPlan() : new AgentPlan();
+        var rerunSteps = executedPlan.stepsAffectedBy(rerunSettings.preferenceAgents());
+        if (rerunSettings.incremental() && !rerunSteps.steps().isEmpty()) {
+            return effects()
+                    .updateState(currentState().rerun(rerunSteps))
+                    .transitionTo(PlanTripWorkflow::rerunPlanStep)
+                    .thenReply(Done.getInstance());
+        } else {
+            return effects()
+                    .updateState(currentState().restart())
                     .transitionTo(PlanTripWorkflow::selectAgentsStep)
                     .thenReply(Done.getInstance());
+        }
+    }
+
+    /**
+     * Records the final answer that was streamed to the client while this workflow was
+     * waiting in the summarize step.
+     */
+    public Effect<Done> completeSummary(String finalAnswer) {
+        if (currentState() == null || currentState().status() != Status.AWAITING_SUMMARY) {
+            return effects()
+                    .error("Workflow '" + commandContext().workflowId() + "' is not awaiting a summary");
         } else {
+            timers().delete(summaryTimerName());
             return effects()
-                    .error("Workflow '" + commandContext().workflowId() + "' has not been started");
+                    .updateState(currentState().withFinalAnswer(finalAnswer).complete())
+                    .pause()
+                    .thenReply(Done.getInstance());
+        }
+    }
+
+    /**
+     * Lets the workflow produce the summary itself when the streaming client went away.
+     */
+    public Effect<Done> summarizeNow() {
+        if (currentState() != null && currentState().status() == Status.AWAITING_SUMMARY) {
+            return effects()
+                    .updateState(currentState().withoutSummaryStreaming())
+                    .transitionTo(PlanTripWorkflow::summarizeStep)
+                    .thenReply(Done.getInstance());
+        } else {
+            return effects().reply(Done.getInstance());
+        }
+    }
+
+    public ReadOnlyEffect<PendingSummary> getPendingSummary() {
+        if (currentState() == null || currentState().status() != Status.AWAITING_SUMMARY) {
+            return effects()
+                    .error("Workflow '" + commandContext().workflowId() + "' is not awaiting a summary");
+        } else {
+            return effects().reply(
+                    new PendingSummary(currentState().userQuery(), List.copyOf(currentState().agentResponses().values()))
+            );
         }
     }
 
@@ -116,20 +414,54 @@ public class PlanTripWorkflow extends Workflow<PlanTripWorkflow.State> {
 
     @StepName("select-agents")
     private StepEffect selectAgentsStep() {
-        var selection = componentClient
-                .forAgent()
-                .inSession(sessionId())
-                .method(SelectorAgent::selectAgents)
-                .invoke(currentState().userQuery);
+        return timed("select-agents", this::selectAgents);
+    }
+
+    private StepEffect selectAgents() {
+        // the preferences are read once per run, and handed over to the agents in their requests;
+        // the read is not needed for the selection, so it runs while the selection is made
+        var preferencesRead = componentClient
+                .forEventSourcedEntity(currentState().userId())
+                .method(PreferencesEntity::getPreferences)
+                .invokeAsync();
+        var preferencesReadStart = System.nanoTime();
+        preferencesRead.thenRun(() -> metrics.recordDuration(
+                Metrics.PREFERENCES_FETCH_DURATION,
+                Duration.ofNanos(System.nanoTime() - preferencesReadStart)
+        ));
+
+        var fingerprint = PlanningCache.catalogFingerprint(agentRegistry);
+        var selection = planningCache
+                .selection(fingerprint, currentState().userQuery)
+                .orElseGet(() -> {
+                    var userQuery = currentState().userQuery;
+                    var sessionId = sessionId();
+                    var selected = hedgedCalls
+                            .call("selector-agent", attempt -> componentClient
+                                    .forAgent()
+                                    .inSession(HedgedCalls.attemptSession(sessionId, attempt))
+                                    .method(SelectorAgent::selectAgents)
+                                    .invokeAsync(userQuery), __ -> true)
+                            .toCompletableFuture()
+                            .join();
+                    if (!selected.agents().isEmpty()) {
+                        planningCache.putSelection(fingerprint, currentState().userQuery, selected);
+                    }
+                    return selected;
+                });
+        logger.debug("Selection cache: {}", planningCache.selectionStats());
+        var preferences = preferencesRead.toCompletableFuture().join();
 
         logger.info("Selected agents: {}", selection.agents());
         if (selection.agents().isEmpty()) {
             var newState = currentState()
+                    .withPreferences(preferences)
                     .withFinalAnswer("Couldn't find any agent(s) able to respond to the original query.")
                     .failed();
             return stepEffects().updateState(newState).thenEnd(); // terminate workflow
         } else {
             return stepEffects()
+                    .updateState(currentState().withPreferences(preferences).inStep("create-plan"))
                     .thenTransitionTo(PlanTripWorkflow::createPlanStep)
                     .withInput(selection);
         }
@@ -137,72 +469,260 @@ public class PlanTripWorkflow extends Workflow<PlanTripWorkflow.State> {
 
     @StepName("create-plan")
     private StepEffect createPlanStep(AgentSelection agentSelection) {
+        return timed("create-plan", () -> createPlan(agentSelection));
+    }
+
+    private StepEffect createPlan(AgentSelection agentSelection) {
         logger.info(
                 "Calling planner with: '{}' / {}",
                 currentState().userQuery,
                 agentSelection.agents()
         );
 
-        var plan = componentClient
-                .forAgent()
-                .inSession(sessionId())
-                .method(CoordinatorAgent::createPlan)
-                .invoke(new CoordinatorAgent.Request(currentState().userQuery, agentSelection));
+        var fingerprint = PlanningCache.catalogFingerprint(agentRegistry);
+        var cachedPlan = planningCache.plan(fingerprint, currentState().userQuery, agentSelection);
+        // speculating only pays off while waiting for the coordinator
+        var speculations = speculationSettings.enabled() && cachedPlan.isEmpty()
+                ? speculate(agentSelection)
+                : Map.<String, Speculation>of();
+        var plan = cachedPlan
+                .orElseGet(() -> {
+                    var request = new CoordinatorAgent.Request(currentState().userQuery, agentSelection);
+                    var sessionId = sessionId();
+                    var created = hedgedCalls
+                            .call("coordinator-agent", attempt -> componentClient
+                                    .forAgent()
+                                    .inSession(HedgedCalls.attemptSession(sessionId, attempt))
+                                    .method(CoordinatorAgent::createPlan)
+                                    .invokeAsync(request), __ -> true)
+                            .toCompletableFuture()
+                            .join();
+                    planningCache.putPlan(fingerprint, currentState().userQuery, agentSelection, created);
+                    return created;
+                });
+        logger.debug("Plan cache: {}", planningCache.planStats());
 
         logger.info("Execution plan: {}", plan);
+        var speculativeResponses = useSpeculations(plan, speculations);
+        if (speculativeResponses.isEmpty()) {
+            return stepEffects()
+                    .updateState(currentState().withPlan(plan).inStep("execute-plan"))
+                    .thenTransitionTo(PlanTripWorkflow::executePlanStep);
+        }
+
+        var storedResponses = responseStore.store(speculativeResponses).toCompletableFuture().join();
+        var newState = currentState().withPlan(plan).addAgentResponses(storedResponses);
+        if (newState.hasMoreSteps()) {
+            return stepEffects()
+                    .updateState(newState.inStep("execute-plan"))
+                    .thenTransitionTo(PlanTripWorkflow::executePlanStep);
+        } else {
+            return stepEffects()
+                    .updateState(newState.inStep("summarize"))
+                    .thenTransitionTo(PlanTripWorkflow::summarizeStep);
+        }
+    }
+
+    private Map<String, Speculation> speculate(AgentSelection agentSelection) {
+        var speculations = new LinkedHashMap<String, Speculation>();
+        for (var agentId : agentSelection.agents()) {
+            var startedAt = System.nanoTime();
+            // in a session of its own, so that a discarded speculation leaves no exchange in the
+            // session memory of the plan; a used response is kept through the response store
+            var response = callAgent(agentId, currentState().userQuery, Map.of(), "speculation-" + UUID.randomUUID(), Metrics.SPECULATION_CALL_DURATION)
+                    .thenApply(text -> new SpeculativeResponse(text, System.nanoTime()))
+                    .toCompletableFuture();
+            speculations.put(agentId, new Speculation(startedAt, response));
+        }
+        return speculations;
+    }
+
+    /**
+     * Returns the speculative responses of the planned steps whose query is equivalent to the
+     * user query, and that don't depend on other steps: a speculation was made without their
+     * answers. The other speculations are discarded, without waiting for them.
+     */
+    private Map<String, String> useSpeculations(AgentPlan plan, Map<String, Speculation> speculations) {
+        var planReadyAt = System.nanoTime();
+        var used = new LinkedHashMap<String, String>();
+        for (var step : plan.steps()) {
+            var speculation = speculations.get(step.agentId());
+            if (speculation == null ||
+                    !step.dependsOn().isEmpty() ||
+                    !speculationSettings.equivalent(currentState().userQuery, step.query())) {
+                continue;
+            }
+            try {
+                var response = speculation.response().join();
+                if (response.text().startsWith("ERROR")) continue; // the step runs as planned
+                used.put(step.agentId(), response.text());
+                // without speculation, the call would have started once the plan was ready
+                var saved = Math.min(response.completedAt() - speculation.startedAt(), planReadyAt - speculation.startedAt());
+                metrics.recordDuration(Metrics.SPECULATION_SAVED, Duration.ofNanos(Math.max(0, saved)), "agent", step.agentId());
+            } catch (CompletionException e) {
+                logger.warn("Speculative call of agent {} failed, running it as planned", step.agentId(), e);
+            }
+        }
+        if (!speculations.isEmpty()) {
+            logger.info("Used speculative responses of {} of {} agents", used.size(), speculations.size());
+            metrics.increment(Metrics.SPECULATIONS, used.size(), "outcome", "used");
+            metrics.increment(Metrics.SPECULATIONS, speculations.size() - used.size(), "outcome", "discarded");
+        }
+        return used;
+    }
+
+    @StepName("rerun-plan")
+    private StepEffect rerunPlanStep() {
+        return timed("rerun-plan", this::rerunPlan);
+    }
+
+    private StepEffect rerunPlan() {
+        // the agent selection and plan are kept, only the preferences are read again
+        var preferences = componentClient
+                .forEventSourcedEntity(currentState().userId())
+                .method(PreferencesEntity::getPreferences)
+                .invoke();
+
+        logger.info("Rerunning plan steps: {}", currentState().plan());
         return stepEffects()
-                .updateState(currentState().withPlan(plan))
+                .updateState(currentState().withPreferences(preferences).inStep("execute-plan"))
                 .thenTransitionTo(PlanTripWorkflow::executePlanStep);
     }
 
     @StepName("execute-plan")
     private StepEffect executePlanStep() {
-        var stepPlan = currentState().nextStepPlan();
-        logger.info(
-                "Executing plan step (agent:{}), asking {}",
-                stepPlan.agentId(),
-                stepPlan.query()
-        );
-        var agentResponse = callAgent(stepPlan.agentId(), stepPlan.query());
-        if (agentResponse.startsWith("ERROR")) {
-            throw new RuntimeException(
-                    "Agent '" + stepPlan.agentId() + "' responded with error: " + agentResponse
+        return timed("execute-plan", this::executePlan);
+    }
+
+    private StepEffect executePlan() {
+        var readySteps = currentState().readySteps();
+
+        // all steps without pending dependencies are sent to their agents before waiting
+        // for any of them, so each wave costs as much as its slowest agent
+        var calls = new LinkedHashMap<String, CompletionStage<String>>();
+        for (var stepPlan : readySteps) {
+            logger.info(
+                    "Executing plan step (agent:{}), asking {}",
+                    stepPlan.agentId(),
+                    stepPlan.query()
             );
+            calls.put(stepPlan.agentId(), callAgent(stepPlan.agentId(), stepPlan.query(), dependencyAnswers(stepPlan), sessionId(), Metrics.AGENT_CALL_DURATION));
+        }
+
+        var responses = new LinkedHashMap<String, String>();
+        calls.forEach((agentId, call) -> {
+            var agentResponse = call.toCompletableFuture().join();
+            if (agentResponse.startsWith("ERROR")) {
+                throw new RuntimeException(
+                        "Agent '" + agentId + "' responded with error: " + agentResponse
+                );
+            }
+            logger.info("Response from [agent:{}]: '{}'", agentId, agentResponse);
+            responses.put(agentId, agentResponse);
+        });
+
+        // large responses are kept out of the workflow state, which is persisted on every step
+        var storedResponses = responseStore.store(responses).toCompletableFuture().join();
+        var newState = currentState().addAgentResponses(storedResponses);
+        recordStateSize(newState);
+        if (newState.hasMoreSteps()) {
+            logger.info("Still {} steps to execute.", newState.plan().steps().size());
+            return stepEffects()
+                    .updateState(newState)
+                    .thenTransitionTo(PlanTripWorkflow::executePlanStep);
         } else {
-            logger.info("Response from [agent:{}]: '{}'", stepPlan.agentId(), agentResponse);
-            var newState = currentState().addAgentResponse(agentResponse);
-
-            if (newState.hasMoreSteps()) {
-                logger.info("Still {} steps to execute.", newState.plan().steps().size());
-                return stepEffects()
-                        .updateState(newState)
-                        .thenTransitionTo(PlanTripWorkflow::executePlanStep);
-            } else {
-                logger.info("No further steps to execute.");
-                return stepEffects()
-                        .updateState(newState)
-                        .thenTransitionTo(PlanTripWorkflow::summarizeStep);
+            logger.info("No further steps to execute.");
+            return stepEffects()
+                    .updateState(newState.inStep("summarize"))
+                    .thenTransitionTo(PlanTripWorkflow::summarizeStep);
+        }
+    }
+
+    /**
+     * The answers of the agents the step depends on. They are handed over in the request rather
+     * than left in the session memory, where a hedge or retry made in a session of its own, or a
+     * cached answer, would leave nothing.
+     */
+    private Map<String, String> dependencyAnswers(AgentPlanStep step) {
+        var answers = new LinkedHashMap<String, String>();
+        for (var agentId : step.dependsOn()) {
+            var response = currentState().agentResponses().get(agentId);
+            if (response != null) {
+                answers.put(agentId, responseStore.resolve(response).toCompletableFuture().join());
             }
         }
+        return answers;
     }
 
-    private String callAgent(String agentId, String query) {
-        var request = new AgentRequest(currentState().userId(), query);
-        DynamicMethodRef<AgentRequest, String> call = componentClient
-                .forAgent()
-                .inSession(sessionId())
-                .dynamicCall(agentId);
-        return call.invoke(request);
+    /**
+     * @param durationMetric the histogram the duration of the call is recorded in, speculative
+     *                       calls are kept apart from those of the plan
+     */
+    private CompletionStage<String> callAgent(
+            String agentId,
+            String query,
+            Map<String, String> dependencyAnswers,
+            String sessionId,
+            String durationMetric
+    ) {
+        // a cached answer is one to the query alone, not to the answers the step builds on
+        var cacheable = dependencyAnswers.isEmpty();
+        var cached = cacheable ? responseCache.get(agentId, query) : Optional.<String>empty();
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+
+        var request = new AgentRequest(currentState().userId(), query, currentState().preferences(), dependencyAnswers);
+        var start = System.nanoTime();
+        return hedgedCalls
+                .call(agentId, attempt -> {
+                    DynamicMethodRef<AgentRequest, String> call = componentClient
+                            .forAgent()
+                            .inSession(HedgedCalls.attemptSession(sessionId, attempt))
+                            .dynamicCall(agentId);
+                    return call.invokeAsync(request);
+                }, response -> !response.startsWith("ERROR"))
+                .whenComplete((response, error) -> {
+                    metrics.recordDuration(
+                            durationMetric,
+                            Duration.ofNanos(System.nanoTime() - start),
+                            "agent", agentId
+                    );
+                    if (cacheable && error == null && !response.startsWith("ERROR")) {
+                        responseCache.put(agentId, query, response);
+                    }
+                });
     }
 
     @StepName("summarize")
     private StepEffect summarizeStep() {
-        var agentsAnswers = currentState().agentResponses.values();
-        var finalAnswer = componentClient
-                .forAgent()
-                .inSession(sessionId())
-                .method(SummarizerAgent::summarize)
-                .invoke(new SummarizerAgent.Request(currentState().userQuery, agentsAnswers));
+        return timed("summarize", this::summarize);
+    }
+
+    private StepEffect summarize() {
+        if (currentState().streamSummary()) {
+            // the summary is streamed to the client by the endpoint, which reports it back with
+            // completeSummary; the timer makes sure we still get an answer if the client goes away
+            timers().createSingleTimer(
+                    summaryTimerName(),
+                    SUMMARY_STREAM_TIMEOUT,
+                    componentClient.forWorkflow(sessionId()).method(PlanTripWorkflow::summarizeNow).deferred()
+            );
+            return stepEffects()
+                    .updateState(currentState().awaitingSummary())
+                    .thenPause();
+        }
+
+        var request = summaryRequest();
+        var sessionId = sessionId();
+        var finalAnswer = hedgedCalls
+                .call("summarizer-agent", attempt -> componentClient
+                        .forAgent()
+                        .inSession(HedgedCalls.attemptSession(sessionId, attempt))
+                        .method(SummarizerAgent::summarize)
+                        .invokeAsync(request), __ -> true)
+                .toCompletableFuture()
+                .join();
 
         return stepEffects()
                 .updateState(currentState().withFinalAnswer(finalAnswer).complete())
@@ -213,6 +733,8 @@ public class PlanTripWorkflow extends Workflow<PlanTripWorkflow.State> {
     public WorkflowSettings settings() {
         return WorkflowSettings.builder()
                 .defaultStepTimeout(ofSeconds(30))
+                // condensing large answers adds a model round trip before the summary
+                .stepTimeout(PlanTripWorkflow::summarizeStep, ofSeconds(60))
                 .defaultStepRecovery(maxRetries(1).failoverTo(PlanTripWorkflow::interruptStep))
                 .stepRecovery(
                         PlanTripWorkflow::selectAgentsStep,
@@ -223,9 +745,48 @@ public class PlanTripWorkflow extends Workflow<PlanTripWorkflow.State> {
 
     @StepName("interrupt")
     private StepEffect interruptStep() {
-        logger.info("Interrupting workflow");
+        return timed("interrupt", () -> {
+            logger.info("Interrupting workflow");
+
+            return stepEffects().updateState(currentState().failed()).thenEnd();
+        });
+    }
+
+    /**
+     * Runs the body of a step, recording its duration and whether it failed.
+     */
+    private StepEffect timed(String step, Supplier<StepEffect> body) {
+        var start = System.nanoTime();
+        try {
+            return body.get();
+        } catch (RuntimeException e) {
+            metrics.increment(Metrics.STEP_FAILURES, 1, "step", step);
+            throw e;
+        } finally {
+            metrics.recordDuration(Metrics.STEP_DURATION, Duration.ofNanos(System.nanoTime() - start), "step", step);
+        }
+    }
+
+    private SummarizerAgent.Request summaryRequest() {
+        var agentsAnswers = responseStore
+                .resolve(currentState().agentResponses.values())
+                .toCompletableFuture()
+                .join();
+        // oversized answers are condensed first, so that the summary prompt fits the model
+        return summaryBudget
+                .fit(sessionId(), new SummarizerAgent.Request(currentState().userQuery, agentsAnswers))
+                .toCompletableFuture()
+                .join();
+    }
+
+    private void recordStateSize(State state) {
+        var size = JsonSupport.encodeToString(state).getBytes(StandardCharsets.UTF_8).length;
+        metrics.recordSize(Metrics.STATE_SIZE, size);
+        logger.debug("Workflow state size: {} bytes", size);
+    }
 
-        return stepEffects().updateState(currentState().failed()).thenEnd();
+    private String summaryTimerName() {
+        return "summary-" + sessionId();
     }
 
     private String sessionId() {
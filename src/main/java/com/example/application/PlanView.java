@@ -6,6 +6,7 @@ import akka.javasdk.annotations.DeleteHandler;
 import akka.javasdk.annotations.Query;
 import akka.javasdk.view.TableUpdater;
 import akka.javasdk.view.View;
+import java.time.Instant;
 import java.util.List;
 
 @ComponentId("plan-view")
@@ -17,14 +18,52 @@ public class PlanView extends View {
             String userId,
             String sessionId,
             String userQuestion,
-            String finalAnswer
+            String finalAnswer,
+            String status,
+            String currentStep,
+            List<String> completedAgents,
+            Instant createdAt,
+            boolean rerunning
     ) {}
 
+    /**
+     * A lightweight projection of a plan, without its answer.
+     */
+    public record PlanSummary(
+            String sessionId,
+            String userQuestion,
+            String status,
+            Instant createdAt
+    ) {}
+
+    public record PlanSummaries(List<PlanSummary> entries, String nextPageToken, boolean hasMore) {}
+
+    public record PageRequest(String userId, String pageToken, int pageSize) {}
+
     @Query("SELECT * AS entries FROM plans WHERE userId = :userId")
     public QueryEffect<PlanEntries> getPlans(String userId) {
         return queryResult();
     }
 
+    @Query("""
+            SELECT (sessionId, userQuestion, status, createdAt) AS entries,
+                   next_page_token() AS nextPageToken,
+                   has_more() AS hasMore
+            FROM plans
+            WHERE userId = :userId
+            ORDER BY createdAt DESC
+            OFFSET page_token_offset(:pageToken)
+            LIMIT :pageSize
+            """)
+    public QueryEffect<PlanSummaries> getPlanSummaries(PageRequest request) {
+        return queryResult();
+    }
+
+    @Query(value = "SELECT * FROM plans WHERE sessionId = :sessionId", streamUpdates = true)
+    public QueryStreamEffect<PlanEntry> getPlanUpdates(String sessionId) {
+        return queryStreamResult();
+    }
+
     @Consume.FromWorkflow(PlanTripWorkflow.class)
     public static class Updater extends TableUpdater<PlanEntry> {
 
@@ -32,7 +71,17 @@ public class PlanView extends View {
             var sessionId = updateContext().eventSubject().get();
             return effects()
                     .updateRow(
-                            new PlanEntry(state.userId(), sessionId, state.userQuery(), state.finalAnswer())
+                            new PlanEntry(
+                                    state.userId(),
+                                    sessionId,
+                                    state.userQuery(),
+                                    state.finalAnswer(),
+                                    state.status().name(),
+                                    state.currentStep(),
+                                    List.copyOf(state.agentResponses().keySet()),
+                                    state.createdAt(),
+                                    state.rerunning()
+                            )
                     );
         }
 
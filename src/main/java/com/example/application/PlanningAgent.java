@@ -29,27 +29,34 @@ public final class PlanningAgent extends Agent {
             """.stripIndent();
 
     private final ComponentClient componentClient;
+    private final PreferencesCache preferencesCache;
+    private final AgentModels models;
 
-    public PlanningAgent(ComponentClient componentClient) {
+    public PlanningAgent(ComponentClient componentClient, PreferencesCache preferencesCache, AgentModels models) {
         this.componentClient = componentClient;
+        this.preferencesCache = preferencesCache;
+        this.models = models;
     }
 
     public Effect<String> query(AgentRequest request) {
-        var allPreferences = componentClient
-                .forEventSourcedEntity(request.userId())
-                .method(PreferencesEntity::getPreferences)
-                .invoke();
+        var allPreferences = request.preferences() != null
+                ? request.preferences()
+                : preferencesCache.getOrLoad(request.userId(), () -> componentClient
+                        .forEventSourcedEntity(request.userId())
+                        .method(PreferencesEntity::getPreferences)
+                        .invoke());
 
         String userMessage;
         if (allPreferences.entries().isEmpty()) {
-            userMessage = request.message();
+            userMessage = request.messageWithDependencies();
         } else {
-            userMessage = request.message() +
+            userMessage = request.messageWithDependencies() +
                     "\nPreferences:\n" +
                     allPreferences.entries().stream().collect(Collectors.joining("\n", "- ", ""));
         }
 
         return effects()
+                .model(models.model(PlanningAgent.class, context()))
                 .systemMessage(SYSTEM_MESSAGE)
                 .userMessage(userMessage)
                 .thenReply();
@@ -0,0 +1,67 @@
+package com.example.application;
+
+import akka.javasdk.JsonSupport;
+import akka.javasdk.agent.AgentRegistry;
+import com.example.domain.AgentPlan;
+import com.example.domain.AgentSelection;
+import com.typesafe.config.Config;
+
+import java.util.Comparator;
+import java.util.Optional;
+
+/**
+ * Caches the outcome of the selector and coordinator agents for near-identical queries.
+ * Both caches are scoped to a fingerprint of the worker agents in the {@link AgentRegistry},
+ * so they are invalidated whenever the set of registered workers changes.
+ */
+public class PlanningCache {
+
+    private final QueryCache<AgentSelection> selections;
+    private final QueryCache<AgentPlan> plans;
+
+    public PlanningCache(QueryCache<AgentSelection> selections, QueryCache<AgentPlan> plans) {
+        this.selections = selections;
+        this.plans = plans;
+    }
+
+    public static PlanningCache fromConfig(Config config) {
+        var maxEntries = config.getInt("max-entries");
+        var ttl = config.getDuration("ttl");
+        return new PlanningCache(new QueryCache<>(maxEntries, ttl), new QueryCache<>(maxEntries, ttl));
+    }
+
+    public static String catalogFingerprint(AgentRegistry agentRegistry) {
+        var workers = agentRegistry.agentsWithRole("worker").stream()
+                .sorted(Comparator.comparing(AgentRegistry.AgentInfo::id))
+                .toList();
+        return Integer.toHexString(JsonSupport.encodeToString(workers).hashCode());
+    }
+
+    public Optional<AgentSelection> selection(String fingerprint, String query) {
+        return selections.get(fingerprint, QueryCache.normalize(query));
+    }
+
+    public void putSelection(String fingerprint, String query, AgentSelection selection) {
+        selections.put(fingerprint, QueryCache.normalize(query), selection);
+    }
+
+    public Optional<AgentPlan> plan(String fingerprint, String query, AgentSelection selection) {
+        return plans.get(fingerprint, planKey(query, selection));
+    }
+
+    public void putPlan(String fingerprint, String query, AgentSelection selection, AgentPlan plan) {
+        plans.put(fingerprint, planKey(query, selection), plan);
+    }
+
+    public QueryCache.Stats selectionStats() {
+        return selections.stats();
+    }
+
+    public QueryCache.Stats planStats() {
+        return plans.stats();
+    }
+
+    private static String planKey(String query, AgentSelection selection) {
+        return selection.agents().stream().sorted().toList() + "|" + QueryCache.normalize(query);
+    }
+}
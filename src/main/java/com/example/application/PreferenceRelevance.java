@@ -0,0 +1,110 @@
+package com.example.application;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A cheap, local check of whether a new preference can matter for a past plan, made before the
+ * plan is sent to the LLM judge. A preference is mapped to the topics configured in
+ * {@code trip-planner.re-evaluation.relevance.topics} ("I'm vegetarian" is about food), and a
+ * plan is relevant when its question or answer mentions enough words of the preference or of
+ * its topics (a restaurant, a dinner). Preferences that match no topic can't be judged locally,
+ * and every plan stays relevant for them.
+ */
+public class PreferenceRelevance {
+
+    /**
+     * @param minScore the number of distinct matching words that makes a plan relevant
+     * @param topics   keywords by topic
+     */
+    public record Settings(boolean enabled, int minScore, Map<String, List<String>> topics) {
+
+        public static Settings fromConfig(Config config) {
+            var topics = new HashMap<String, List<String>>();
+            var topicsConfig = config.getConfig("topics");
+            topicsConfig.root().keySet().forEach(topic ->
+                    topics.put(topic, topicsConfig.getStringList(ConfigUtil.joinPath(topic)))
+            );
+            return new Settings(config.getBoolean("enabled"), config.getInt("min-score"), Map.copyOf(topics));
+        }
+    }
+
+    // words of a preference that say how much, not what about
+    private static final Set<String> STOP_WORDS = Set.of(
+            "like", "love", "hate", "prefer", "want", "would", "always", "never", "only", "really",
+            "that", "with", "when", "than", "please", "don", "dont", "doesn", "very", "more", "less"
+    );
+
+    private final boolean enabled;
+    private final int minScore;
+    private final Map<String, Set<String>> topicKeywords;
+
+    private PreferenceRelevance(boolean enabled, int minScore, Map<String, Set<String>> topicKeywords) {
+        this.enabled = enabled;
+        this.minScore = minScore;
+        this.topicKeywords = topicKeywords;
+    }
+
+    public static PreferenceRelevance create(Settings settings) {
+        var topicKeywords = new HashMap<String, Set<String>>();
+        settings.topics().forEach((topic, keywords) -> topicKeywords.put(topic, words(String.join(" ", keywords), 1)));
+        return new PreferenceRelevance(settings.enabled(), settings.minScore(), Map.copyOf(topicKeywords));
+    }
+
+    /**
+     * The words a plan has to mention for the preference to matter to it, or empty when the
+     * preference can't be judged locally.
+     */
+    public Set<String> relevantWords(String preference) {
+        var preferenceWords = words(preference, 1);
+        var relevant = new HashSet<String>();
+        topicKeywords.values().forEach(keywords -> {
+            if (keywords.stream().anyMatch(preferenceWords::contains)) {
+                relevant.addAll(keywords);
+            }
+        });
+        if (relevant.isEmpty()) return Set.of();
+        // the preference's own words count too, when they say something
+        words(preference, 4).stream().filter(word -> !STOP_WORDS.contains(word)).forEach(relevant::add);
+        return relevant;
+    }
+
+    /**
+     * The words a plan has to mention for any of the preferences to matter to it, or empty when
+     * one of them can't be judged locally.
+     */
+    public Set<String> relevantWords(Collection<String> preferences) {
+        var relevant = new HashSet<String>();
+        for (var preference : preferences) {
+            var words = relevantWords(preference);
+            if (words.isEmpty()) return Set.of();
+            relevant.addAll(words);
+        }
+        return relevant;
+    }
+
+    /**
+     * @param relevantWords the words returned by {@link #relevantWords(String)}
+     */
+    public boolean isRelevant(Set<String> relevantWords, String userQuestion, String finalAnswer) {
+        if (!enabled || relevantWords.isEmpty()) return true;
+        var planWords = words(userQuestion + " " + finalAnswer, 1);
+        return planWords.stream().filter(relevantWords::contains).count() >= minScore;
+    }
+
+    private static Set<String> words(String text, int minLength) {
+        return Arrays.stream(QueryCache.normalize(text).split(" "))
+                .filter(word -> word.length() >= minLength)
+                .map(AgentMatcher::stem)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.application;
+
+import com.example.domain.Preferences;
+import com.typesafe.config.Config;
+
+import java.util.function.Supplier;
+
+/**
+ * A local read-through cache of user preferences for agents that are called outside of a
+ * workflow, and therefore don't get a preferences snapshot in their request. Entries are
+ * invalidated by the {@link PreferencesConsumer} when a preference is added; the TTL bounds
+ * staleness on the nodes that don't process that event.
+ */
+public class PreferencesCache {
+
+    // preferences are not scoped to the agent catalog
+    private static final String NO_FINGERPRINT = "";
+
+    private final QueryCache<Preferences> cache;
+
+    public PreferencesCache(QueryCache<Preferences> cache) {
+        this.cache = cache;
+    }
+
+    public static PreferencesCache fromConfig(Config config) {
+        return new PreferencesCache(new QueryCache<>(config.getInt("max-entries"), config.getDuration("ttl")));
+    }
+
+    public Preferences getOrLoad(String userId, Supplier<Preferences> loader) {
+        return cache.get(NO_FINGERPRINT, userId).orElseGet(() -> {
+            var preferences = loader.get();
+            cache.put(NO_FINGERPRINT, userId, preferences);
+            return preferences;
+        });
+    }
+
+    public void invalidate(String userId) {
+        cache.invalidate(userId);
+    }
+
+    public QueryCache.Stats stats() {
+        return cache.stats();
+    }
+}
@@ -5,10 +5,13 @@ import akka.javasdk.annotations.Consume;
 import akka.javasdk.client.ComponentClient;
 import akka.javasdk.consumer.Consumer;
 import com.example.domain.PreferencesEvent;
+import com.example.entity.PendingPreferencesEntity;
 import com.example.entity.PreferencesEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 @ComponentId("preferences-consumer")
 @Consume.FromEventSourcedEntity(PreferencesEntity.class)
 public class PreferencesConsumer extends Consumer {
@@ -16,61 +19,43 @@ public class PreferencesConsumer extends Consumer {
     private static final Logger logger = LoggerFactory.getLogger(PreferencesConsumer.class);
 
     private final ComponentClient componentClient;
-
-    public PreferencesConsumer(ComponentClient componentClient) {
+    private final PreferencesReEvaluation.Settings settings;
+    private final PreferencesCache preferencesCache;
+
+    public PreferencesConsumer(
+            ComponentClient componentClient,
+            PreferencesReEvaluation.Settings settings,
+            PreferencesCache preferencesCache
+    ) {
         this.componentClient = componentClient;
+        this.settings = settings;
+        this.preferencesCache = preferencesCache;
     }
 
-    public Effect onPreferenceAdded(PreferencesEvent.PreferenceAdded event) {
+    public Effect onEvent(PreferencesEvent event) {
         var userId = messageContext().eventSubject().get(); // the entity id
-        logger.info("Preference added for user {}: {}", userId, event.preference());
-
-        // Get all plan (sessions) for this user from the PlanView
-        var plans = componentClient
-                .forView()
-                .method(PlanView::getPlans)
-                .invoke(userId);
-
-        // Call EvaluatorAgent for each session
-        for (var plan : plans.entries()) {
-            if (plan.finalAnswer() != null && !plan.finalAnswer().isEmpty()) {
-                var evaluationRequest = new EvaluatorAgent.EvaluationRequest(
-                        userId,
-                        plan.userQuestion(),
-                        plan.finalAnswer()
-                );
-
-                var evaluationResult = componentClient
-                        .forAgent()
-                        .inSession(plan.sessionId())
-                        .method(EvaluatorAgent::evaluate)
-                        .invoke(evaluationRequest);
-
-                logger.info(
-                        "Evaluation completed for session {}: score={}, feedback='{}'",
-                        plan.sessionId(),
-                        evaluationResult.score(),
-                        evaluationResult.feedback()
-                );
-
-                if (evaluationResult.score() <= 0) {
-                    // run the workflow again to generate a better answer
-
-                    componentClient
-                            .forWorkflow(plan.sessionId())
-                            .method(PlanTripWorkflow::runAgain)
-                            .invoke();
-
-                    logger.info(
-                            "Started workflow {} for user {} to re-answer question: '{}'",
-                            plan.sessionId(),
-                            userId,
-                            plan.userQuestion()
-                    );
-                }
-            }
-        }
-
-        return effects().done();
+        var preferences = switch (event) {
+            case PreferencesEvent.PreferenceAdded evt -> List.of(evt.preference());
+            case PreferencesEvent.PreferencesAdded evt -> evt.preferences();
+        };
+        logger.info("Preferences added for user {}: {}", userId, preferences);
+        preferencesCache.invalidate(userId);
+
+        // the re-evaluation is debounced: every event replaces the user's pending timer,
+        // and the pass runs once no preference was added for the debounce window
+        var scheduled = componentClient
+                .forKeyValueEntity(userId)
+                .method(PendingPreferencesEntity::add)
+                .invokeAsync(preferences)
+                .thenCompose(__ -> timers().createSingleTimer(
+                        PreferencesReEvaluation.timerName(userId),
+                        settings.debounceWindow(),
+                        componentClient
+                                .forTimedAction()
+                                .method(PreferencesReEvaluation::reEvaluate)
+                                .deferred(userId)
+                ));
+
+        return effects().asyncDone(scheduled);
     }
 }
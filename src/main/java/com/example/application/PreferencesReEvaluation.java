@@ -0,0 +1,266 @@
+package com.example.application;
+
+import akka.Done;
+import akka.javasdk.annotations.ComponentId;
+import akka.javasdk.client.ComponentClient;
+import akka.javasdk.timedaction.TimedAction;
+import com.example.domain.Preferences;
+import com.example.entity.PendingPreferencesEntity;
+import com.example.entity.PreferencesEntity;
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Re-evaluates the plans of a user against their latest preferences, once the preferences
+ * added in a burst have settled. Scheduled by the {@link PreferencesConsumer}, which replaces
+ * the pending timer of a user with every preference added, so that a burst of preferences
+ * costs a single pass, and a single rerun per plan.
+ */
+@ComponentId("preferences-re-evaluation")
+public class PreferencesReEvaluation extends TimedAction {
+
+    /**
+     * @param parallelism    the maximum number of evaluation calls in flight for a single pass
+     * @param batchSize      the number of plans scored by a single LLM call
+     * @param relevance      the filter of the plans a new preference can't matter to
+     * @param debounceWindow how long a user's preferences must settle before their plans are re-evaluated
+     */
+    public record Settings(int parallelism, int batchSize, PreferenceRelevance relevance, Duration debounceWindow) {
+        public static Settings fromConfig(Config config) {
+            return new Settings(
+                    Math.max(1, config.getInt("parallelism")),
+                    Math.max(1, config.getInt("batch-size")),
+                    PreferenceRelevance.create(PreferenceRelevance.Settings.fromConfig(config.getConfig("relevance"))),
+                    config.getDuration("debounce-window")
+            );
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(PreferencesReEvaluation.class);
+
+    private final ComponentClient componentClient;
+    private final Settings settings;
+    private final Metrics metrics;
+
+    public PreferencesReEvaluation(ComponentClient componentClient, Settings settings, Metrics metrics) {
+        this.componentClient = componentClient;
+        this.settings = settings;
+        this.metrics = metrics;
+    }
+
+    public static String timerName(String userId) {
+        return "re-evaluation-" + userId;
+    }
+
+    public Effect reEvaluate(String userId) {
+        var pendingPreferences = componentClient
+                .forKeyValueEntity(userId)
+                .method(PendingPreferencesEntity::getPending)
+                .invokeAsync();
+
+        var pass = pendingPreferences.thenCompose(pending -> {
+            if (pending.preferences().isEmpty()) {
+                // an earlier pass already took care of these preferences
+                return CompletableFuture.completedFuture(Done.getInstance());
+            }
+
+            // the preferences are read once, and shared by all the evaluations of this pass
+            var preferences = componentClient
+                    .forEventSourcedEntity(userId)
+                    .method(PreferencesEntity::getPreferences)
+                    .invokeAsync();
+
+            // Get all plan (sessions) for this user from the PlanView
+            return componentClient
+                    .forView()
+                    .method(PlanView::getPlans)
+                    .invokeAsync(userId)
+                    .thenCombine(preferences, (plans, allPreferences) ->
+                            reEvaluate(userId, pending.preferences(), plans.entries(), allPreferences))
+                    .thenCompose(Function.identity())
+                    // preferences added during this pass stay pending, for the pass of their own timer
+                    .thenCompose(__ -> componentClient
+                            .forKeyValueEntity(userId)
+                            .method(PendingPreferencesEntity::acknowledge)
+                            .invokeAsync(pending.lastSeq()));
+        });
+
+        return effects().asyncDone(pass);
+    }
+
+    private CompletionStage<Done> reEvaluate(
+            String userId,
+            List<String> newPreferences,
+            List<PlanView.PlanEntry> plans,
+            Preferences preferences
+    ) {
+        // only the plans the new preferences can matter to are sent to the LLM judge
+        var relevantWords = settings.relevance().relevantWords(newPreferences);
+        var candidates = plans.stream()
+                .filter(plan -> plan.finalAnswer() != null && !plan.finalAnswer().isEmpty())
+                .toList();
+        var answered = candidates.stream()
+                .filter(plan -> settings.relevance().isRelevant(relevantWords, plan.userQuestion(), plan.finalAnswer()))
+                .toList();
+        metrics.increment(Metrics.REEVALUATION_CANDIDATES, candidates.size());
+        metrics.increment(Metrics.REEVALUATIONS_SKIPPED, candidates.size() - answered.size());
+        logger.info(
+                "Re-evaluating {} of {} plans of user {}",
+                answered.size(),
+                candidates.size(),
+                userId
+        );
+
+        // a plan being answered again may have read the preferences before these were added, and
+        // has no answer to judge yet: it is answered again once more, with the latest preferences
+        var rerunning = plans.stream().filter(PlanView.PlanEntry::rerunning).toList();
+        if (!rerunning.isEmpty()) {
+            logger.info("Answering again {} plans of user {} already being answered again", rerunning.size(), userId);
+        }
+
+        // batches are spread over a fixed number of lanes, each lane evaluating its batches one
+        // after the other, so that at most 'parallelism' evaluations are in flight
+        var lanes = new ArrayList<CompletableFuture<Done>>();
+        rerunning.forEach(plan -> lanes.add(runAgain(userId, plan).toCompletableFuture()));
+        for (var laneBatches : lanes(batches(answered, settings.batchSize()), settings.parallelism())) {
+            CompletionStage<Done> laneEvaluations = CompletableFuture.completedFuture(Done.getInstance());
+            for (var batch : laneBatches) {
+                laneEvaluations = laneEvaluations.thenCompose(__ -> evaluateBatch(userId, batch, preferences));
+            }
+            lanes.add(laneEvaluations.toCompletableFuture());
+        }
+
+        return CompletableFuture
+                .allOf(lanes.toArray(CompletableFuture[]::new))
+                .thenApply(__ -> Done.getInstance());
+    }
+
+    /**
+     * Splits the plans in batches of at most {@code batchSize} plans.
+     */
+    static <T> List<List<T>> batches(List<T> plans, int batchSize) {
+        var batches = new ArrayList<List<T>>();
+        for (int i = 0; i < plans.size(); i += batchSize) {
+            batches.add(plans.subList(i, Math.min(i + batchSize, plans.size())));
+        }
+        return batches;
+    }
+
+    /**
+     * Deals the batches over at most {@code parallelism} lanes, in turn.
+     */
+    static <T> List<List<T>> lanes(List<T> batches, int parallelism) {
+        var lanes = new ArrayList<List<T>>();
+        for (int lane = 0; lane < Math.min(parallelism, batches.size()); lane++) {
+            var laneBatches = new ArrayList<T>();
+            for (int i = lane; i < batches.size(); i += parallelism) {
+                laneBatches.add(batches.get(i));
+            }
+            lanes.add(laneBatches);
+        }
+        return lanes;
+    }
+
+    /**
+     * The sessions of the batch the LLM judge left out of its evaluations.
+     */
+    static List<String> missingSessionIds(List<String> sessionIds, List<BatchEvaluatorAgent.PlanEvaluation> evaluations) {
+        var evaluated = evaluations.stream()
+                .map(BatchEvaluatorAgent.PlanEvaluation::sessionId)
+                .collect(Collectors.toSet());
+        return sessionIds.stream().filter(sessionId -> !evaluated.contains(sessionId)).toList();
+    }
+
+    private CompletionStage<Done> evaluateBatch(
+            String userId,
+            List<PlanView.PlanEntry> batch,
+            Preferences preferences
+    ) {
+        CompletionStage<List<BatchEvaluatorAgent.PlanEvaluation>> evaluations;
+        if (batch.size() == 1) {
+            var plan = batch.getFirst();
+            evaluations = componentClient
+                    .forAgent()
+                    .inSession(plan.sessionId())
+                    .method(EvaluatorAgent::evaluate)
+                    .invokeAsync(new EvaluatorAgent.EvaluationRequest(userId, plan.userQuestion(), plan.finalAnswer(), preferences))
+                    .thenApply(result -> List.of(
+                            new BatchEvaluatorAgent.PlanEvaluation(plan.sessionId(), result.score(), result.feedback())
+                    ));
+        } else {
+            var plansToEvaluate = batch.stream()
+                    .map(plan -> new BatchEvaluatorAgent.PlanToEvaluate(plan.sessionId(), plan.userQuestion(), plan.finalAnswer()))
+                    .toList();
+            evaluations = componentClient
+                    .forAgent()
+                    .inSession(UUID.randomUUID().toString())
+                    .method(BatchEvaluatorAgent::evaluate)
+                    .invokeAsync(new BatchEvaluatorAgent.BatchEvaluationRequest(userId, plansToEvaluate, preferences))
+                    .thenApply(BatchEvaluatorAgent.BatchEvaluationResult::evaluations);
+        }
+
+        return evaluations.thenCompose(results -> {
+            Map<String, PlanView.PlanEntry> plansBySession = batch.stream()
+                    .collect(Collectors.toMap(PlanView.PlanEntry::sessionId, Function.identity()));
+            var followUps = new ArrayList<CompletableFuture<Done>>();
+            for (var evaluationResult : results) {
+                var plan = plansBySession.get(evaluationResult.sessionId());
+                if (plan == null) {
+                    logger.warn("Evaluation returned for unknown session {}", evaluationResult.sessionId());
+                    continue;
+                }
+
+                logger.info(
+                        "Evaluation completed for session {}: score={}, feedback='{}'",
+                        plan.sessionId(),
+                        evaluationResult.score(),
+                        evaluationResult.feedback()
+                );
+
+                if (evaluationResult.score() <= 0) {
+                    followUps.add(runAgain(userId, plan).toCompletableFuture());
+                }
+            }
+
+            // a plan the judge left out of a batch is evaluated on its own, rather than never
+            var missing = missingSessionIds(batch.stream().map(PlanView.PlanEntry::sessionId).toList(), results);
+            if (batch.size() > 1 && !missing.isEmpty()) {
+                logger.warn("Batch evaluation left out sessions {}, evaluating them singly", missing);
+                metrics.increment(Metrics.REEVALUATIONS_MISSED, missing.size());
+                missing.forEach(sessionId -> followUps.add(
+                        evaluateBatch(userId, List.of(plansBySession.get(sessionId)), preferences).toCompletableFuture()));
+            }
+            return CompletableFuture
+                    .allOf(followUps.toArray(CompletableFuture[]::new))
+                    .thenApply(__ -> Done.getInstance());
+        });
+    }
+
+    private CompletionStage<Done> runAgain(String userId, PlanView.PlanEntry plan) {
+        // run the workflow again to generate a better answer
+        return componentClient
+                .forWorkflow(plan.sessionId())
+                .method(PlanTripWorkflow::runAgain)
+                .invokeAsync()
+                .thenApply(done -> {
+                    logger.info(
+                            "Started workflow {} for user {} to re-answer question: '{}'",
+                            plan.sessionId(),
+                            userId,
+                            plan.userQuestion()
+                    );
+                    return done;
+                });
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.application;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded, in-memory cache keyed by a normalized user query. Entries expire after a TTL and
+ * the least recently used entry is evicted once the cache is full. All entries are scoped to a
+ * catalog fingerprint: when a lookup is made with a different fingerprint than the previous one,
+ * the whole cache is invalidated.
+ */
+public class QueryCache<V> {
+
+    public record Stats(long hits, long misses, int size) {}
+
+    private record Entry<V>(V value, Instant expiresAt) {}
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+    private final LinkedHashMap<String, Entry<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private String fingerprint = "";
+
+    public QueryCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    public QueryCache(int maxEntries, Duration ttl, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                return size() > QueryCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Lower-cases the query and collapses punctuation and whitespace, so that
+     * "Weekend trip to Lisbon" and "weekend trip to lisbon!" share the same key.
+     */
+    public static String normalize(String query) {
+        return NON_WORD.matcher(query.toLowerCase(Locale.ROOT)).replaceAll(" ").strip();
+    }
+
+    public synchronized Optional<V> get(String catalogFingerprint, String key) {
+        invalidateOnCatalogChange(catalogFingerprint);
+        var entry = entries.get(key);
+        if (entry != null && entry.expiresAt().isAfter(clock.instant())) {
+            hits.increment();
+            return Optional.of(entry.value());
+        } else {
+            if (entry != null) entries.remove(key);
+            misses.increment();
+            return Optional.empty();
+        }
+    }
+
+    public synchronized void put(String catalogFingerprint, String key, V value) {
+        invalidateOnCatalogChange(catalogFingerprint);
+        if (maxEntries > 0) {
+            entries.put(key, new Entry<>(value, clock.instant().plus(ttl)));
+        }
+    }
+
+    public synchronized void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), entries.size());
+    }
+
+    private void invalidateOnCatalogChange(String catalogFingerprint) {
+        if (!fingerprint.equals(catalogFingerprint)) {
+            entries.clear();
+            fingerprint = catalogFingerprint;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.application;
+
+import com.typesafe.config.Config;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A cache of worker agent responses shared by all plans on a node, for the agents listed in
+ * {@code trip-planner.response-cache.agents}. Responses are keyed by agent, the normalized
+ * query and the current date, so that "the weather in Tokyo tomorrow" asked today and tomorrow
+ * isn't answered alike. The cache is shared by all users: only agents that don't use the user
+ * preferences should opt in.
+ */
+public class ResponseCache {
+
+    /**
+     * @param agents the component ids of the worker agents whose responses are cached
+     */
+    public record Settings(Set<String> agents, int maxEntries, Duration ttl) {
+        public static Settings fromConfig(Config config) {
+            return new Settings(
+                    Set.copyOf(config.getStringList("agents")),
+                    config.getInt("max-entries"),
+                    config.getDuration("ttl")
+            );
+        }
+    }
+
+    // responses are not scoped to the agent catalog
+    private static final String NO_FINGERPRINT = "";
+
+    private final Set<String> agents;
+    private final QueryCache<String> responses;
+    private final Clock clock;
+    private final Metrics metrics;
+
+    public ResponseCache(Settings settings, Clock clock, Metrics metrics) {
+        this.agents = settings.agents();
+        this.responses = new QueryCache<>(settings.maxEntries(), settings.ttl(), clock);
+        this.clock = clock;
+        this.metrics = metrics;
+    }
+
+    public ResponseCache(Settings settings, Metrics metrics) {
+        this(settings, Clock.systemUTC(), metrics);
+    }
+
+    public boolean caches(String agentId) {
+        return agents.contains(agentId);
+    }
+
+    /**
+     * The cached response of the agent to the query, always empty for agents that didn't opt in.
+     */
+    public Optional<String> get(String agentId, String query) {
+        if (!caches(agentId)) return Optional.empty();
+        var response = responses.get(NO_FINGERPRINT, key(agentId, query));
+        metrics.increment(Metrics.RESPONSE_CACHE_LOOKUPS, 1, "agent", agentId, "result", response.isPresent() ? "hit" : "miss");
+        return response;
+    }
+
+    public void put(String agentId, String query, String response) {
+        if (caches(agentId)) {
+            responses.put(NO_FINGERPRINT, key(agentId, query), response);
+        }
+    }
+
+    private String key(String agentId, String query) {
+        return agentId + "|" + LocalDate.now(clock.withZone(ZoneOffset.UTC)) + "|" + QueryCache.normalize(query);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.application;
+
+import akka.javasdk.client.ComponentClient;
+import com.example.domain.AgentResponse;
+import com.example.domain.ResponseContent;
+import com.example.entity.ResponseContentEntity;
+import com.typesafe.config.Config;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Keeps agent responses out of the workflow state when they are larger than the configured
+ * inline limit, by storing them compressed in the {@link ResponseContentEntity}.
+ */
+public class ResponseStore {
+
+    /**
+     * @param inlineLimit responses with more characters than this are stored out-of-line
+     */
+    public record Settings(int inlineLimit) {
+        public static Settings fromConfig(Config config) {
+            return new Settings(config.getInt("inline-limit"));
+        }
+    }
+
+    private final ComponentClient componentClient;
+    private final Settings settings;
+
+    public ResponseStore(ComponentClient componentClient, Settings settings) {
+        this.componentClient = componentClient;
+        this.settings = settings;
+    }
+
+    public CompletionStage<Map<String, AgentResponse>> store(Map<String, String> responses) {
+        var stored = new LinkedHashMap<String, CompletableFuture<AgentResponse>>();
+        responses.forEach((agentId, text) -> stored.put(agentId, store(text).toCompletableFuture()));
+
+        return CompletableFuture
+                .allOf(stored.values().toArray(CompletableFuture[]::new))
+                .thenApply(__ -> {
+                    var result = new LinkedHashMap<String, AgentResponse>();
+                    stored.forEach((agentId, response) -> result.put(agentId, response.join()));
+                    return result;
+                });
+    }
+
+    public CompletionStage<AgentResponse> store(String text) {
+        if (text.length() <= settings.inlineLimit()) {
+            return CompletableFuture.completedFuture(AgentResponse.inline(text));
+        } else {
+            var contentId = ResponseContent.contentId(text);
+            return componentClient
+                    .forKeyValueEntity(contentId)
+                    .method(ResponseContentEntity::store)
+                    .invokeAsync(ResponseContent.compress(text))
+                    .thenApply(__ -> AgentResponse.stored(contentId));
+        }
+    }
+
+    public CompletionStage<List<String>> resolve(Collection<AgentResponse> responses) {
+        var texts = responses.stream().map(this::resolve).map(CompletionStage::toCompletableFuture).toList();
+        return CompletableFuture
+                .allOf(texts.toArray(CompletableFuture[]::new))
+                .thenApply(__ -> texts.stream().map(CompletableFuture::join).toList());
+    }
+
+    public CompletionStage<String> resolve(AgentResponse response) {
+        if (!response.hasContentId()) {
+            return CompletableFuture.completedFuture(response.text());
+        } else {
+            return componentClient
+                    .forKeyValueEntity(response.contentId())
+                    .method(ResponseContentEntity::getText)
+                    .invokeAsync();
+        }
+    }
+}
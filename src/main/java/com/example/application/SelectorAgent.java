@@ -18,11 +18,21 @@ import com.example.domain.AgentSelection;
 public class SelectorAgent extends Agent {
 
     private final String systemMessage;
+    private final AgentMatcher.Settings matcherSettings;
+    private final AgentMatcher matcher;
+    private final AgentModels models;
 
-    public SelectorAgent(AgentRegistry agentsRegistry) {
+    public SelectorAgent(AgentRegistry agentsRegistry, AgentMatchers matchers, AgentModels models) {
+        this.models = models;
         var agents = agentsRegistry.agentsWithRole("worker");
+        this.matcherSettings = matchers.settings();
+        this.matcher = matchers.matcher(agentsRegistry);
 
-        this.systemMessage = """
+        this.systemMessage = buildSystemMessage(JsonSupport.encodeToString(agents));
+    }
+
+    static String buildSystemMessage(String agentsJson) {
+        return """
       Your job is to analyse the user request and select the agents that should be
       used to answer the user. In order to do that, you will receive a list of
       available agents. Each agent has an id, a name and a description of its capabilities.
@@ -52,11 +62,20 @@ public class SelectorAgent extends Agent {
       Also important, use the agent id to identify the agents.
       %s
     """.stripIndent()
-                .formatted(JsonSupport.encodeToString(agents));
+                .formatted(agentsJson);
     }
 
     public Effect<AgentSelection> selectAgents(String message) {
+        if (matcherSettings.enabled()) {
+            var match = matcher.select(message, matcherSettings.confidenceThreshold());
+            if (match.isPresent()) {
+                // no need to call an LLM when the query obviously maps to a set of agents
+                return effects().reply(match.get());
+            }
+        }
+
         return effects()
+                .model(models.model(SelectorAgent.class, systemMessage + message, true))
                 .systemMessage(systemMessage)
                 .userMessage(message)
                 .responseAs(AgentSelection.class)
@@ -0,0 +1,31 @@
+package com.example.application;
+
+import akka.javasdk.agent.Agent;
+import akka.javasdk.annotations.AgentDescription;
+import akka.javasdk.annotations.ComponentId;
+
+@ComponentId("streaming-summarizer-agent")
+@AgentDescription(
+        name = "Streaming Summarizer",
+        description = """
+          An agent that creates a summary from responses provided by other agents
+          and streams it token by token.
+        """
+)
+public class StreamingSummarizerAgent extends Agent {
+
+    private final AgentModels models;
+
+    public StreamingSummarizerAgent(AgentModels models) {
+        this.models = models;
+    }
+
+    public StreamEffect summarize(SummarizerAgent.Request request) {
+        // same prompt as the SummarizerAgent, only the reply is streamed
+        return streamEffects()
+                .model(models.model(StreamingSummarizerAgent.class))
+                .systemMessage(SummarizerAgent.buildSystemMessage(request.originalQuery()))
+                .userMessage(SummarizerAgent.buildUserMessage(request))
+                .thenReply();
+    }
+}
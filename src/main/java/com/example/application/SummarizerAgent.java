@@ -15,7 +15,13 @@ public class SummarizerAgent extends Agent {
 
     public record Request(String originalQuery, Collection<String> agentsResponses) {}
 
-    private String buildSystemMessage(String userQuery) {
+    private final AgentModels models;
+
+    public SummarizerAgent(AgentModels models) {
+        this.models = models;
+    }
+
+    static String buildSystemMessage(String userQuery) {
         return """
       You will receive the original query and a message generate by different other agents.
 
@@ -30,15 +36,20 @@ public class SummarizerAgent extends Agent {
     """.formatted(userQuery);
     }
 
-    public Effect<String> summarize(Request request) {
+    static String buildUserMessage(Request request) {
         var allResponses = request.agentsResponses
                 .stream()
                 .filter(response -> !response.startsWith("ERROR"))
                 .collect(Collectors.joining(" "));
 
+        return "Summarize the following message: '" + allResponses + "'";
+    }
+
+    public Effect<String> summarize(Request request) {
         return effects()
+                .model(models.model(SummarizerAgent.class, context()))
                 .systemMessage(buildSystemMessage(request.originalQuery))
-                .userMessage("Summarize the following message: '" + allResponses + "'")
+                .userMessage(buildUserMessage(request))
                 .thenReply();
     }
 }
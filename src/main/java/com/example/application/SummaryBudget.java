@@ -0,0 +1,157 @@
+package com.example.application;
+
+import akka.javasdk.client.ComponentClient;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Keeps the prompt of the summarizer within a token budget. When the agent responses don't fit,
+ * the oversized ones are split into chunks that are condensed in parallel by the
+ * {@link ChunkSummarizerAgent} (map), and the condensed chunks take their place in the
+ * summarizer request (reduce). A single wave of parallel calls is made, so that summarizing
+ * costs at most one extra model round trip however large the plan grows.
+ */
+public class SummaryBudget {
+
+    /**
+     * @param maxPromptTokens the estimated size of the summarizer prompt above which responses are condensed
+     * @param chunkTokens     the estimated size of the chunks that are condensed by a single call
+     */
+    public record Settings(int maxPromptTokens, int chunkTokens) {
+
+        /**
+         * Takes the settings of the given model from {@code models}, falling back to the defaults.
+         */
+        public static Settings fromConfig(Config config, String modelName) {
+            var modelPath = ConfigUtil.joinPath("models", modelName);
+            var effective = config.hasPath(modelPath) ? config.getConfig(modelPath).withFallback(config) : config;
+            return new Settings(effective.getInt("max-prompt-tokens"), effective.getInt("chunk-tokens"));
+        }
+    }
+
+    /**
+     * A response as it goes into the summarizer prompt: either kept as is, or split into chunks
+     * that are each condensed to {@code chunkTargetTokens}.
+     */
+    record Part(String text, List<String> chunks, int chunkTargetTokens) {
+        static Part kept(String text) {
+            return new Part(text, List.of(), 0);
+        }
+
+        boolean condensed() {
+            return !chunks.isEmpty();
+        }
+    }
+
+    // a rough estimate for English text, good enough to stay clear of the context window
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final ComponentClient componentClient;
+    private final Settings settings;
+
+    public SummaryBudget(ComponentClient componentClient, Settings settings) {
+        this.componentClient = componentClient;
+        this.settings = settings;
+    }
+
+    public static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Returns the request unchanged when its prompt fits the budget, or with its oversized
+     * responses condensed otherwise.
+     *
+     * @param sessionId the session of the plan, the chunk summaries are not added to its memory
+     */
+    public CompletionStage<SummarizerAgent.Request> fit(String sessionId, SummarizerAgent.Request request) {
+        var parts = parts(request, settings);
+        if (parts.stream().noneMatch(Part::condensed)) {
+            return CompletableFuture.completedFuture(request);
+        }
+
+        var texts = parts.stream()
+                .map(part -> part.condensed()
+                        ? condense(sessionId, request.originalQuery(), part)
+                        : CompletableFuture.completedFuture(part.text()))
+                .toList();
+        return CompletableFuture
+                .allOf(texts.toArray(CompletableFuture[]::new))
+                .thenApply(__ -> new SummarizerAgent.Request(
+                        request.originalQuery(),
+                        texts.stream().map(CompletableFuture::join).toList()
+                ));
+    }
+
+    private CompletableFuture<String> condense(String sessionId, String originalQuery, Part part) {
+        // about three words for every four tokens
+        var maxWords = Math.max(1, part.chunkTargetTokens() * 3 / 4);
+        var chunks = part.chunks().stream()
+                .map(chunk -> componentClient
+                        .forAgent()
+                        .inSession(sessionId)
+                        .method(ChunkSummarizerAgent::condense)
+                        .invokeAsync(new ChunkSummarizerAgent.Request(originalQuery, chunk, maxWords))
+                        .toCompletableFuture())
+                .toList();
+        return CompletableFuture
+                .allOf(chunks.toArray(CompletableFuture[]::new))
+                .thenApply(__ -> String.join(" ", chunks.stream().map(CompletableFuture::join).toList()));
+    }
+
+    /**
+     * Splits the budget left after the prompt itself between the responses: the ones within an
+     * even share are kept, and what they leave over is shared by the oversized ones.
+     */
+    static List<Part> parts(SummarizerAgent.Request request, Settings settings) {
+        var responses = List.copyOf(request.agentsResponses());
+        var overhead = estimateTokens(SummarizerAgent.buildSystemMessage(request.originalQuery())) +
+                estimateTokens(SummarizerAgent.buildUserMessage(new SummarizerAgent.Request(request.originalQuery(), List.of())));
+        var total = overhead + responses.stream().mapToInt(SummaryBudget::estimateTokens).sum();
+        if (total <= settings.maxPromptTokens() || responses.isEmpty()) {
+            return responses.stream().map(Part::kept).toList();
+        }
+
+        var available = Math.max(responses.size(), settings.maxPromptTokens() - overhead);
+        var share = available / responses.size();
+        var keptTokens = responses.stream().mapToInt(SummaryBudget::estimateTokens).filter(tokens -> tokens <= share).sum();
+        var oversized = responses.stream().filter(response -> estimateTokens(response) > share).count();
+        var perOversized = (int) Math.max(1, (available - keptTokens) / oversized);
+
+        var parts = new ArrayList<Part>();
+        for (var response : responses) {
+            if (estimateTokens(response) <= share) {
+                parts.add(Part.kept(response));
+            } else {
+                var chunks = chunks(response, settings.chunkTokens() * CHARS_PER_TOKEN);
+                parts.add(new Part(response, chunks, Math.max(1, perOversized / chunks.size())));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Splits a text into chunks of at most {@code maxChars} characters, at whitespace when
+     * there is any.
+     */
+    static List<String> chunks(String text, int maxChars) {
+        var chunks = new ArrayList<String>();
+        var start = 0;
+        while (start < text.length()) {
+            var end = Math.min(text.length(), start + maxChars);
+            if (end < text.length()) {
+                var space = text.lastIndexOf(' ', end);
+                if (space > start) end = space;
+            }
+            var chunk = text.substring(start, end).strip();
+            if (!chunk.isEmpty()) chunks.add(chunk);
+            start = end;
+        }
+        return chunks;
+    }
+}
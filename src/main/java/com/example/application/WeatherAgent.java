@@ -23,11 +23,18 @@ public class WeatherAgent extends Agent {
             You provide current weather, forecasts, and other related information.
             """.stripIndent();
 
+    private final AgentModels models;
+
+    public WeatherAgent(AgentModels models) {
+        this.models = models;
+    }
+
     public Effect<String> query(AgentRequest request) {
         // prettier-ignore
         return effects()
+                .model(models.model(WeatherAgent.class, context()))
                 .systemMessage(SYSTEM_MESSAGE)
-                .userMessage(request.message())
+                .userMessage(request.messageWithDependencies())
                 .thenReply();
     }
 }
@@ -1,7 +1,10 @@
 package com.example.domain;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Represents a agent plan consisting of multiple steps to be executed by different agents.
@@ -13,4 +16,39 @@ public record AgentPlan(List<AgentPlanStep> steps) {
     public AgentPlan() {
         this(new ArrayList<>());
     }
+
+    /**
+     * Returns the steps that don't depend on any other step still pending in this plan.
+     * If no step is ready while steps are still pending (e.g. a cyclic plan), all pending
+     * steps are returned so that execution can always make progress.
+     */
+    public List<AgentPlanStep> readySteps() {
+        Set<String> pendingAgents = steps.stream().map(AgentPlanStep::agentId).collect(Collectors.toSet());
+        var ready = steps.stream()
+                .filter(step -> step.dependsOn().stream()
+                        .noneMatch(dependency -> !dependency.equals(step.agentId()) && pendingAgents.contains(dependency)))
+                .toList();
+        return ready.isEmpty() ? List.copyOf(steps) : ready;
+    }
+
+    /**
+     * Returns the steps of the given agents, along with the steps that depend on them directly
+     * or transitively, in plan order.
+     */
+    public AgentPlan stepsAffectedBy(Set<String> agentIds) {
+        var affected = new HashSet<>(agentIds);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var step : steps) {
+                if (!affected.contains(step.agentId()) && step.dependsOn().stream().anyMatch(affected::contains)) {
+                    affected.add(step.agentId());
+                    changed = true;
+                }
+            }
+        }
+        return new AgentPlan(steps.stream()
+                .filter(step -> affected.contains(step.agentId()))
+                .collect(Collectors.toCollection(ArrayList::new)));
+    }
 }
@@ -1,7 +1,20 @@
 package com.example.domain;
 
+import java.util.List;
+
 /**
  * Represents a single step within an Agent Plan.
  * Each step is assigned to a specific agent and contains a command description.
+ * A step may declare the ids of the agents it depends on; steps without pending
+ * dependencies can be executed concurrently.
  */
-public record AgentPlanStep(String agentId, String query) {}
\ No newline at end of file
+public record AgentPlanStep(String agentId, String query, List<String> dependsOn) {
+
+    public AgentPlanStep {
+        dependsOn = dependsOn == null ? List.of() : List.copyOf(dependsOn);
+    }
+
+    public AgentPlanStep(String agentId, String query) {
+        this(agentId, query, List.of());
+    }
+}
@@ -1,3 +1,45 @@
 package com.example.domain;
 
-public record AgentRequest(String userId, String message) {}
\ No newline at end of file
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A request for a worker agent. When sent from a workflow, it carries the snapshot of the
+ * user preferences taken for that workflow run, so that the agent doesn't need to read them,
+ * and the answers of the agents its plan step depends on: those may have been made in another
+ * session, or not made at all, so the agent can't find them in its session memory.
+ *
+ * @param dependencyAnswers the answers of the agents the request depends on, by agent id
+ */
+public record AgentRequest(String userId, String message, Preferences preferences, Map<String, String> dependencyAnswers) {
+
+    public AgentRequest {
+        dependencyAnswers = dependencyAnswers == null
+                ? Map.of()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(dependencyAnswers));
+    }
+
+    public AgentRequest(String userId, String message, Preferences preferences) {
+        this(userId, message, preferences, Map.of());
+    }
+
+    public AgentRequest(String userId, String message) {
+        this(userId, message, null);
+    }
+
+    /**
+     * The message, followed by the answers of the agents it depends on, if any.
+     */
+    public String messageWithDependencies() {
+        if (dependencyAnswers.isEmpty()) {
+            return message;
+        }
+        return message +
+                "\n\nAnswers of other agents to build on:\n" +
+                dependencyAnswers.entrySet().stream()
+                        .map(answer -> "- " + answer.getKey() + ": " + answer.getValue())
+                        .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The response of an agent as kept in the workflow state. Small responses are kept inline,
+ * large ones are only referenced by the id of their compressed content, stored out-of-line.
+ */
+public record AgentResponse(String text, String contentId) {
+
+    @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+    public AgentResponse(@JsonProperty("text") String text, @JsonProperty("contentId") String contentId) {
+        this.text = text;
+        this.contentId = contentId;
+    }
+
+    /**
+     * Workflow states persisted before responses could be stored out-of-line have the responses
+     * as plain strings, which are read back as inline responses.
+     */
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static AgentResponse inline(String text) {
+        return new AgentResponse(text, null);
+    }
+
+    public static AgentResponse stored(String contentId) {
+        return new AgentResponse(null, contentId);
+    }
+
+    public boolean hasContentId() {
+        return contentId != null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Preferences added by a user since their plans were last re-evaluated. Every preference added
+ * gets the next sequence number, implicitly: the pending ones follow the {@code acknowledged}
+ * ones, so that a pass acknowledges exactly the preferences it read, even when passes overlap.
+ *
+ * @param acknowledged the sequence number of the last preference a pass took care of
+ */
+public record PendingPreferences(List<String> preferences, long acknowledged) {
+
+    public static PendingPreferences empty() {
+        return new PendingPreferences(List.of(), 0);
+    }
+
+    public PendingPreferences add(List<String> added) {
+        var newPreferences = new ArrayList<>(preferences);
+        newPreferences.addAll(added);
+        return new PendingPreferences(newPreferences, acknowledged);
+    }
+
+    /**
+     * The sequence number of the last pending preference, what a pass reading them acknowledges.
+     */
+    public long lastSeq() {
+        return acknowledged + preferences.size();
+    }
+
+    /**
+     * Removes the preferences up to the given sequence number, the ones a re-evaluation pass
+     * took care of. Preferences an overlapping pass already acknowledged are not removed twice.
+     */
+    public PendingPreferences acknowledge(long upToSeq) {
+        if (upToSeq <= acknowledged) return this;
+        var count = (int) Math.min(upToSeq - acknowledged, preferences.size());
+        return new PendingPreferences(List.copyOf(preferences.subList(count, preferences.size())), acknowledged + count);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.domain;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of preferences that is appended to without copying. Every version shares
+ * the same buffer and only sees its own first {@code size} entries, so appending to the latest
+ * version, which is what an entity replaying its events does, is amortized O(1). Appending to an
+ * older version copies it. Entries are also indexed by their normalized text.
+ */
+final class PreferenceEntries extends AbstractList<String> implements RandomAccess {
+
+    private final ArrayList<String> buffer;
+    // the position of the first entry with a normalized text, positions never change
+    private final Map<String, Integer> positions;
+    private final int size;
+
+    private PreferenceEntries(ArrayList<String> buffer, Map<String, Integer> positions, int size) {
+        this.buffer = buffer;
+        this.positions = positions;
+        this.size = size;
+    }
+
+    static PreferenceEntries copyOf(List<String> entries) {
+        var buffer = new ArrayList<String>(entries.size());
+        var positions = new HashMap<String, Integer>();
+        for (var entry : entries) {
+            positions.putIfAbsent(Preferences.normalize(entry), buffer.size());
+            buffer.add(entry);
+        }
+        return new PreferenceEntries(buffer, positions, buffer.size());
+    }
+
+    boolean containsNormalized(String normalized) {
+        synchronized (buffer) {
+            var position = positions.get(normalized);
+            return position != null && position < size;
+        }
+    }
+
+    PreferenceEntries append(String entry) {
+        synchronized (buffer) {
+            if (size == buffer.size()) {
+                buffer.add(entry);
+                positions.putIfAbsent(Preferences.normalize(entry), size);
+                return new PreferenceEntries(buffer, positions, size + 1);
+            }
+        }
+        // a later version was already appended to, this one gets a buffer of its own
+        var copy = copyOf(this);
+        return copy.append(entry);
+    }
+
+    @Override
+    public String get(int index) {
+        Objects.checkIndex(index, size);
+        synchronized (buffer) {
+            return buffer.get(index);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -1,12 +1,66 @@
 package com.example.domain;
 
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 public record Preferences(List<String> entries) {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    public Preferences {
+        // deserialized and caller provided lists are indexed once, appends don't copy them again
+        if (!(entries instanceof PreferenceEntries)) {
+            entries = PreferenceEntries.copyOf(entries);
+        }
+    }
+
+    /**
+     * Lower-cases a preference and collapses punctuation and whitespace, so that "Vegetarian!"
+     * and "vegetarian" are the same preference.
+     */
+    public static String normalize(String preference) {
+        return NON_WORD.matcher(preference.toLowerCase(Locale.ROOT)).replaceAll(" ").strip();
+    }
+
+    public boolean contains(String preference) {
+        return ((PreferenceEntries) entries).containsNormalized(normalize(preference));
+    }
+
+    /**
+     * Adds a preference, unless an equal one (once normalized) was already added.
+     */
     public Preferences addPreference(String preference) {
-        var newEntries = new ArrayList<>(entries);
-        newEntries.add(preference);
-        return new Preferences(newEntries);
+        if (contains(preference)) {
+            return this;
+        } else {
+            return new Preferences(((PreferenceEntries) entries).append(preference));
+        }
+    }
+
+    public Preferences addPreferences(List<String> preferences) {
+        var result = this;
+        for (var preference : preferences) {
+            result = result.addPreference(preference);
+        }
+        return result;
+    }
+
+    /**
+     * Only the preferences that are not there yet, without duplicates among them.
+     */
+    public List<String> newPreferences(List<String> preferences) {
+        var added = new HashSet<String>();
+        return preferences.stream()
+                .filter(preference -> !contains(preference) && added.add(normalize(preference)))
+                .toList();
+    }
+
+    /**
+     * Preferences are only ever appended, so the number of entries identifies a version.
+     */
+    public int version() {
+        return entries.size();
     }
 }
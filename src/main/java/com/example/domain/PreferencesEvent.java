@@ -2,7 +2,12 @@ package com.example.domain;
 
 import akka.javasdk.annotations.TypeName;
 
+import java.util.List;
+
 public sealed interface PreferencesEvent {
     @TypeName("preference-added")
     record PreferenceAdded(String preference) implements PreferencesEvent {}
+
+    @TypeName("preferences-added")
+    record PreferencesAdded(List<String> preferences) implements PreferencesEvent {}
 }
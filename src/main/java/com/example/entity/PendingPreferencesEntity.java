@@ -0,0 +1,41 @@
+package com.example.entity;
+
+import akka.Done;
+import akka.javasdk.annotations.ComponentId;
+import akka.javasdk.keyvalueentity.KeyValueEntity;
+import com.example.domain.PendingPreferences;
+
+import java.util.List;
+
+/**
+ * The preferences of a user that are waiting for a debounced re-evaluation of their plans, the
+ * entity id being the user id. Preferences are only removed once the pass that used them is
+ * done, so that a failed pass is retried with them.
+ */
+@ComponentId("pending-preferences")
+public class PendingPreferencesEntity extends KeyValueEntity<PendingPreferences> {
+
+    @Override
+    public PendingPreferences emptyState() {
+        return PendingPreferences.empty();
+    }
+
+    public Effect<Done> add(List<String> preferences) {
+        return effects()
+                .updateState(currentState().add(preferences))
+                .thenReply(Done.done());
+    }
+
+    public Effect<PendingPreferences> getPending() {
+        return effects().reply(currentState());
+    }
+
+    /**
+     * @param upToSeq the sequence number of the last pending preference the completed pass used
+     */
+    public Effect<Done> acknowledge(long upToSeq) {
+        return effects()
+                .updateState(currentState().acknowledge(upToSeq))
+                .thenReply(Done.done());
+    }
+}
@@ -12,16 +12,38 @@ import java.util.List;
 public class PreferencesEntity extends EventSourcedEntity<Preferences, PreferencesEvent> {
 
     public record AddPreference(String preference) {}
+    public record AddPreferences(List<String> preferences) {}
 
     @Override
     public Preferences emptyState() {
         return new Preferences(List.of());
     }
 
+    /**
+     * Adds a preference, unless the user already has it (ignoring case and punctuation).
+     */
     public Effect<Done> addPreference(AddPreference command) {
-        return effects()
-                .persist(new PreferencesEvent.PreferenceAdded(command.preference()))
-                .thenReply(__ -> Done.done());
+        if (currentState().contains(command.preference())) {
+            return effects().reply(Done.done());
+        } else {
+            return effects()
+                    .persist(new PreferencesEvent.PreferenceAdded(command.preference()))
+                    .thenReply(__ -> Done.done());
+        }
+    }
+
+    /**
+     * Adds the preferences the user doesn't have yet in a single event.
+     */
+    public Effect<Done> addPreferences(AddPreferences command) {
+        var newPreferences = currentState().newPreferences(command.preferences());
+        if (newPreferences.isEmpty()) {
+            return effects().reply(Done.done());
+        } else {
+            return effects()
+                    .persist(new PreferencesEvent.PreferencesAdded(newPreferences))
+                    .thenReply(__ -> Done.done());
+        }
     }
 
     public Effect<Preferences> getPreferences() {
@@ -33,6 +55,8 @@ public class PreferencesEntity extends EventSourcedEntity<Preferences, Preferenc
         return switch (event) {
             case PreferencesEvent.PreferenceAdded evt -> currentState()
                     .addPreference(evt.preference());
+            case PreferencesEvent.PreferencesAdded evt -> currentState()
+                    .addPreferences(evt.preferences());
         };
     }
 }
@@ -0,0 +1,32 @@
+package com.example.entity;
+
+import akka.Done;
+import akka.javasdk.annotations.ComponentId;
+import akka.javasdk.keyvalueentity.KeyValueEntity;
+import com.example.domain.ResponseContent;
+
+/**
+ * Content-addressed storage of large agent responses, the entity id being the hash of the
+ * uncompressed text. Storing the same content twice is a no-op.
+ */
+@ComponentId("response-content")
+public class ResponseContentEntity extends KeyValueEntity<ResponseContent> {
+
+    public Effect<Done> store(ResponseContent content) {
+        if (currentState() != null) {
+            return effects().reply(Done.done());
+        } else {
+            return effects()
+                    .updateState(content)
+                    .thenReply(Done.done());
+        }
+    }
+
+    public Effect<String> getText() {
+        if (currentState() == null) {
+            return effects().error("No content with id '" + commandContext().entityId() + "'");
+        } else {
+            return effects().reply(currentState().decompress());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.api;
+
+import akka.javasdk.testkit.TestKit;
+import akka.javasdk.testkit.TestKitSupport;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares a batch of related questions with the same questions sent as independent plan
+ * requests, run as many at a time as the plans of the batch: reports the time until every answer
+ * is in, and the model calls made for each agent. Not part of the regular test run, start it with
+ * {@code mvn test -Dtest=BatchPlanningHarness -Dharness.questions=20}.
+ */
+public class BatchPlanningHarness extends TestKitSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchPlanningHarness.class);
+
+    private static final int QUESTIONS = Integer.getInteger("harness.questions", 12);
+    private static final int PARALLELISM = 4;
+    private static final String MODEL_CALLS = "trip_planner_llm_call_duration_seconds_count";
+    private static final List<String> CITIES = List.of("Lisbon", "Porto", "Madrid", "Seville", "Rome", "Florence");
+
+    @Override
+    protected TestKit.Settings testKitSettings() {
+        // the worker responses aren't cached, so that the second run doesn't reuse the first one's,
+        // and the agents are selected by the model, as the local fast path would select them for
+        // both runs without any model call
+        return TestKit.Settings.DEFAULT
+                .withAdditionalConfig("""
+                        akka.javasdk.agent.model-provider = mock
+                        akka.javasdk.agent.mock.latency { distribution = fixed, median = 200ms }
+                        trip-planner.selection.fast-path.enabled = false
+                        trip-planner.response-cache.agents = []
+                        trip-planner.batch.parallelism = %d
+                        """.formatted(PARALLELISM));
+    }
+
+    @Test
+    public void run() throws Exception {
+        var questions = IntStream.range(0, QUESTIONS)
+                .mapToObj(i -> "Plan a weekend in " + CITIES.get(i % CITIES.size()) + " on the first weekend of month " + (i + 1))
+                .toList();
+
+        var beforeIndependent = modelCalls();
+        var independentStart = System.nanoTime();
+        runIndependently(questions);
+        var independentElapsed = Duration.ofNanos(System.nanoTime() - independentStart);
+        var independentCalls = difference(modelCalls(), beforeIndependent);
+
+        var beforeBatch = modelCalls();
+        var batchStart = System.nanoTime();
+        runAsBatch(questions);
+        var batchElapsed = Duration.ofNanos(System.nanoTime() - batchStart);
+        var batchCalls = difference(modelCalls(), beforeBatch);
+
+        logger.info("{} independent plans, {} at a time: {} ms, model calls {}",
+                QUESTIONS, PARALLELISM, independentElapsed.toMillis(), independentCalls);
+        logger.info("Batch of {} questions, {} at a time: {} ms, model calls {}",
+                QUESTIONS, PARALLELISM, batchElapsed.toMillis(), batchCalls);
+        logger.info("The batch took {}% of the time of the independent plans, and made {} of their {} model calls",
+                batchElapsed.toMillis() * 100 / Math.max(1, independentElapsed.toMillis()),
+                total(batchCalls),
+                total(independentCalls));
+
+        // the batch selects the agents once rather than once per question
+        assertThat(batchCalls.getOrDefault("selector-agent", 0L)).isEqualTo(1);
+        assertThat(independentCalls.getOrDefault("selector-agent", 0L)).isEqualTo(QUESTIONS);
+        assertThat(total(batchCalls)).isLessThan(total(independentCalls));
+        // every plan of a lane skips the selection round trip
+        assertThat(batchElapsed).isLessThan(independentElapsed);
+    }
+
+    private void runIndependently(List<String> questions) throws Exception {
+        var permits = new Semaphore(PARALLELISM);
+        var runs = new ArrayList<CompletableFuture<Void>>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < questions.size(); i++) {
+                permits.acquire();
+                var userId = "harness-independent-" + i;
+                var question = questions.get(i);
+                runs.add(CompletableFuture
+                        .runAsync(() -> {
+                            var created = httpClient
+                                    .POST("/plans/" + userId)
+                                    .withRequestBody(new PlanningEndpoint.Request(question))
+                                    .invoke();
+                            var location = created.httpResponse().getHeader("Location").orElseThrow().value();
+                            awaitAnswer(location);
+                        }, executor)
+                        .whenComplete((done, error) -> permits.release()));
+            }
+            CompletableFuture.allOf(runs.toArray(CompletableFuture[]::new)).join();
+        }
+    }
+
+    private void runAsBatch(List<String> questions) {
+        var created = httpClient
+                .POST("/plans/harness-batch/batch")
+                .withRequestBody(new PlanningEndpoint.BatchRequest(questions))
+                .responseBodyAs(PlanningEndpoint.BatchResponse.class)
+                .invoke();
+        assertThat(created.status().intValue()).isEqualTo(201);
+        created.body().locations().forEach(this::awaitAnswer);
+    }
+
+    private void awaitAnswer(String location) {
+        var answer = httpClient.GET(location + "?waitMs=60000").invoke();
+        assertThat(answer.status().isSuccess()).isTrue();
+    }
+
+    /**
+     * The model calls made so far, by agent.
+     */
+    private Map<String, Long> modelCalls() {
+        var metrics = httpClient.GET("/metrics").invoke().body().utf8String();
+        var prefix = MODEL_CALLS + "{agent=\"";
+        return metrics.lines()
+                .filter(line -> line.startsWith(prefix))
+                .collect(Collectors.toMap(
+                        line -> line.substring(prefix.length(), line.indexOf('"', prefix.length())),
+                        line -> Long.parseLong(line.substring(line.lastIndexOf(' ') + 1))
+                ));
+    }
+
+    private static Map<String, Long> difference(Map<String, Long> after, Map<String, Long> before) {
+        return after.entrySet().stream().collect(Collectors.toMap(
+                Map.Entry::getKey,
+                entry -> entry.getValue() - before.getOrDefault(entry.getKey(), 0L)
+        ));
+    }
+
+    private static long total(Map<String, Long> calls) {
+        return calls.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
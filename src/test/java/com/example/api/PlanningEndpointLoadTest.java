@@ -0,0 +1,79 @@
+package com.example.api;
+
+import akka.javasdk.testkit.TestKit;
+import akka.javasdk.testkit.TestKitSupport;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fires many concurrent plan requests at a single node, with the mock model so that only the
+ * service's own overhead is measured, and reports how many of them were in flight at once.
+ */
+public class PlanningEndpointLoadTest extends TestKitSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanningEndpointLoadTest.class);
+
+    private static final int REQUESTS = 200;
+
+    @Override
+    protected TestKit.Settings testKitSettings() {
+        return TestKit.Settings.DEFAULT
+                .withAdditionalConfig("""
+                        akka.javasdk.agent.model-provider = mock
+                        akka.javasdk.agent.mock.latency { distribution = fixed, median = 0ms }
+                        """);
+    }
+
+    @Test
+    public void holdsManyConcurrentPlanRequests() throws Exception {
+        var start = System.nanoTime();
+
+        var responses = IntStream.range(0, REQUESTS)
+                .mapToObj(i -> httpClient
+                        .POST("/plans/load-user-" + i)
+                        .withRequestBody(new PlanningEndpoint.Request("What is the weather forecast in Tokyo?"))
+                        .invokeAsync()
+                        .toCompletableFuture())
+                .toList();
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).get(60, SECONDS);
+
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        // counted by the endpoint itself, from when a request is received until it is answered
+        var maxInFlight = gauge("trip_planner_plan_requests_in_flight_peak");
+        logger.info("{} plan requests accepted in {} ms, at most {} in flight", REQUESTS, elapsed.toMillis(), maxInFlight);
+        assertThat(maxInFlight).isGreaterThan(1);
+
+        var locations = responses.stream()
+                .map(CompletableFuture::join)
+                .peek(response -> assertThat(response.status().intValue()).isEqualTo(201))
+                .map(response -> response.httpResponse().getHeader("Location").orElseThrow().value())
+                .toList();
+
+        // every accepted plan runs to completion, the answers are awaited all at once
+        var answers = locations.stream()
+                .map(location -> httpClient
+                        .GET(location + "?waitMs=30000")
+                        .invokeAsync()
+                        .toCompletableFuture())
+                .toList();
+        CompletableFuture.allOf(answers.toArray(CompletableFuture[]::new)).get(60, SECONDS);
+        answers.forEach(answer -> assertThat(answer.join().status().isSuccess()).isTrue());
+    }
+
+    private long gauge(String name) {
+        var metrics = httpClient.GET("/metrics").invoke().body().utf8String();
+        return metrics.lines()
+                .filter(line -> line.startsWith(name + " "))
+                .mapToLong(line -> Long.parseLong(line.substring(name.length() + 1)))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlanningEndpointTest {
+
+    @Test
+    public void parsesTheWaitInMilliseconds() {
+        assertThat(PlanningEndpoint.parseWaitMs("5000")).hasValue(5000);
+        assertThat(PlanningEndpoint.parseWaitMs(" 250 ")).hasValue(250);
+    }
+
+    @Test
+    public void rejectsAWaitThatIsNotANumber() {
+        assertThat(PlanningEndpoint.parseWaitMs("5s")).isEmpty();
+        assertThat(PlanningEndpoint.parseWaitMs("")).isEmpty();
+        assertThat(PlanningEndpoint.parseWaitMs("99999999999")).isEmpty();
+    }
+}
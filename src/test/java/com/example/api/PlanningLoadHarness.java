@@ -0,0 +1,141 @@
+package com.example.api;
+
+import akka.javasdk.testkit.TestKit;
+import akka.javasdk.testkit.TestKitSupport;
+import akka.stream.javadsl.Sink;
+import com.example.application.PlanView;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end load harness for the orchestration layer: drives the PlanningEndpoint with the
+ * mock model and reports workflow throughput, end-to-end latency percentiles and the time spent
+ * in each workflow step. Not part of the regular test run, start it with
+ * {@code mvn test -Dtest=PlanningLoadHarness -Dharness.workflows=500 -Dharness.concurrency=50}.
+ */
+public class PlanningLoadHarness extends TestKitSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanningLoadHarness.class);
+
+    private static final int WORKFLOWS = Integer.getInteger("harness.workflows", 100);
+    private static final int CONCURRENCY = Integer.getInteger("harness.concurrency", 20);
+    private static final String QUERY = "Plan a weekend trip to Lisbon and check the weather";
+
+    private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, List<Long>> stepTimings = new ConcurrentHashMap<>();
+
+    @Override
+    protected TestKit.Settings testKitSettings() {
+        return TestKit.Settings.DEFAULT
+                .withAdditionalConfig("""
+                        akka.javasdk.agent.model-provider = mock
+                        akka.javasdk.agent.mock.latency { distribution = lognormal, median = 200ms, p99 = 1s }
+                        """);
+    }
+
+    @Test
+    public void run() throws Exception {
+        var permits = new Semaphore(CONCURRENCY);
+        var runs = new ArrayList<CompletableFuture<Void>>();
+        var start = System.nanoTime();
+
+        // the workflow runs block on their HTTP calls, so they get threads of their own rather
+        // than the common pool, which is sized by the number of cores
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < WORKFLOWS; i++) {
+                permits.acquire();
+                var userId = "harness-user-" + i;
+                runs.add(CompletableFuture
+                        .runAsync(() -> runWorkflow(userId), executor)
+                        .whenComplete((done, error) -> permits.release()));
+            }
+            CompletableFuture.allOf(runs.toArray(CompletableFuture[]::new)).join();
+        }
+
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        logger.info(
+                "{} workflows, concurrency {}: {} workflows/s, latency p50={} ms p99={} ms",
+                WORKFLOWS,
+                CONCURRENCY,
+                String.format("%.1f", WORKFLOWS * 1000.0 / elapsed.toMillis()),
+                percentile(latencies, 50),
+                percentile(latencies, 99)
+        );
+        stepTimings.forEach((step, timings) -> logger.info(
+                "  step {} p50={} ms p99={} ms",
+                step,
+                percentile(timings, 50),
+                percentile(timings, 99)
+        ));
+
+        assertThat(latencies).hasSize(WORKFLOWS);
+    }
+
+    private void runWorkflow(String userId) {
+        var start = System.nanoTime();
+        var created = httpClient
+                .POST("/plans/" + userId)
+                .withRequestBody(new PlanningEndpoint.Request(QUERY))
+                .invoke();
+        var location = created.httpResponse().getHeader("Location").orElseThrow().value();
+        var sessionId = location.substring(location.lastIndexOf('/') + 1);
+
+        var steps = recordSteps(sessionId);
+        var answer = httpClient.GET(location + "?waitMs=60000").invoke();
+        assertThat(answer.status().isSuccess()).isTrue();
+        latencies.add(Duration.ofNanos(System.nanoTime() - start).toMillis());
+        steps.join();
+    }
+
+    /**
+     * Follows the step transitions of a workflow through the plan view, and records how long
+     * each step took.
+     */
+    private CompletableFuture<Void> recordSteps(String sessionId) {
+        var previous = new Object() {
+            String step = null;
+            long since = System.nanoTime();
+        };
+        return componentClient
+                .forView()
+                .stream(PlanView::getPlanUpdates)
+                .source(sessionId)
+                .takeWhile(entry -> !"COMPLETED".equals(entry.status()) && !"FAILED".equals(entry.status()), true)
+                .runWith(Sink.foreach(entry -> {
+                    var now = System.nanoTime();
+                    var step = "COMPLETED".equals(entry.status()) ? "completed" : entry.currentStep();
+                    if (previous.step != null && !previous.step.equals(step)) {
+                        stepTimings
+                                .computeIfAbsent(previous.step, __ -> Collections.synchronizedList(new ArrayList<>()))
+                                .add(Duration.ofNanos(now - previous.since).toMillis());
+                    }
+                    if (!step.equals(previous.step)) {
+                        previous.step = step;
+                        previous.since = now;
+                    }
+                }), testKit.getMaterializer())
+                .thenAccept(done -> {})
+                .toCompletableFuture();
+    }
+
+    private static long percentile(List<Long> values, int percentile) {
+        synchronized (values) {
+            if (values.isEmpty()) return 0;
+            var sorted = values.stream().sorted().toList();
+            return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AdmissionControlTest {
+
+    private final AdmissionControl admissionControl = new AdmissionControl(
+            new AdmissionControl.Settings(true, 3, 2, Duration.ofSeconds(5), Duration.ofMinutes(5)),
+            new Metrics()
+    );
+
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+    private CompletableFuture<String> admit(String userId) {
+        return admissionControl
+                .admit(userId, 1, () -> CompletableFuture.completedFuture("session"), __ -> finished)
+                .toCompletableFuture();
+    }
+
+    @Test
+    public void rejectsPlansBeyondTheUserLimit() {
+        admit("alice").join();
+        admit("alice").join();
+
+        assertThatThrownBy(() -> admit("alice").join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(AdmissionControl.Rejected.class);
+        assertThat(admit("bob").join()).isEqualTo("session");
+    }
+
+    @Test
+    public void rejectsPlansBeyondTheGlobalLimit() {
+        admit("alice").join();
+        admit("bob").join();
+        admit("carol").join();
+
+        assertThatThrownBy(() -> admit("dave").join()).hasCauseInstanceOf(AdmissionControl.Rejected.class);
+    }
+
+    @Test
+    public void admitsAgainOnceThePlansFinished() {
+        admit("alice").join();
+        admit("alice").join();
+
+        finished.complete(null);
+
+        assertThat(admit("alice").join()).isEqualTo("session");
+    }
+
+    @Test
+    public void releasesPlansThatFailedToStart() {
+        for (int i = 0; i < 3; i++) {
+            var failed = admissionControl.admit(
+                    "alice",
+                    1,
+                    () -> CompletableFuture.<String>failedFuture(new IllegalStateException("workflow unavailable")),
+                    __ -> finished
+            );
+            assertThatThrownBy(() -> failed.toCompletableFuture().join()).hasRootCauseMessage("workflow unavailable");
+        }
+
+        assertThat(admit("alice").join()).isEqualTo("session");
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.application;
+
+import akka.javasdk.agent.AgentRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AgentMatcherTest {
+
+    private static final double THRESHOLD = 0.8;
+
+    private final AgentMatcher matcher = AgentMatcher.create(
+            List.of(
+                    new AgentRegistry.AgentInfo(
+                            "weather-agent",
+                            "Weather Agent",
+                            "An agent that provides weather information. It can provide current weather, forecasts, and other related information.",
+                            "worker"
+                    ),
+                    new AgentRegistry.AgentInfo(
+                            "planning-agent",
+                            "Planning Agent",
+                            "An agent that suggests activities and plans around the world.",
+                            "worker"
+                    )
+            ),
+            Map.of(
+                    "weather-agent", List.of("weather", "forecast", "rain"),
+                    "planning-agent", List.of("trip", "itinerary", "weekend")
+            )
+    );
+
+    @Test
+    public void selectsTheAgentsMatchingTheQuery() {
+        assertThat(matcher.select("What is the weather forecast in Tokyo?", THRESHOLD))
+                .hasValueSatisfying(selection -> assertThat(selection.agents()).containsExactly("weather-agent"));
+        assertThat(matcher.select("Rain during my weekend in Lisbon?", THRESHOLD))
+                .hasValueSatisfying(selection -> assertThat(selection.agents()).containsExactly("planning-agent", "weather-agent"));
+    }
+
+    @Test
+    public void leavesQueriesMatchingNoAgentToTheModel() {
+        assertThat(matcher.select("Book a table for two at eight", THRESHOLD)).isEmpty();
+    }
+
+    @Test
+    public void leavesAmbiguousQueriesToTheModel() {
+        // "around" and "world" are only words of the planning agent's description, a partial match
+        assertThat(matcher.select("Weather around the world", THRESHOLD)).isEmpty();
+    }
+
+    @Test
+    public void matchesPluralsOfKeywords() {
+        assertThat(matcher.select("Trips to Rome", THRESHOLD))
+                .hasValueSatisfying(selection -> assertThat(selection.agents()).containsExactly("planning-agent"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.application;
+
+import akka.javasdk.agent.ModelProvider;
+import com.typesafe.config.ConfigFactory;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+public class AgentModelsTest {
+
+    private static final String DEFAULT = "akka.javasdk.agent.openai";
+    private static final String SMALL = "trip-planner.models.small";
+    private static final String FALLBACK = "trip-planner.models.fallback";
+
+    private final Metrics metrics = new Metrics();
+    private final LlmRateLimiter unlimited = new LlmRateLimiter(new LlmRateLimiter.Settings(false, 1, 1), metrics);
+    private final Map<String, ModelProvider.Custom> openAi = Map.of(
+            DEFAULT, model("default"),
+            SMALL, model("small"),
+            FALLBACK, model("fallback")
+    );
+
+    private AgentModels models(boolean router, Optional<String> fallbackModel) {
+        var routing = new AgentModels.Routing(Map.of("selector-agent", SMALL), router, SMALL, 100, fallbackModel);
+        return new AgentModels(Optional.empty(), openAi, routing, unlimited, metrics);
+    }
+
+    @Test
+    public void usesTheModelOfTheAgentOrTheDefaultOne() {
+        var models = models(false, Optional.empty());
+
+        assertThat(answerOf(models.model(SelectorAgent.class))).isEqualTo("small");
+        assertThat(answerOf(models.model(WeatherAgent.class))).isEqualTo("default");
+        assertThat(metrics.scrape())
+                .contains("trip_planner_model_routes_total{agent=\"selector-agent\",model=\"trip-planner.models.small\"} 1");
+    }
+
+    @Test
+    public void sendsHedgesAndRetriesToTheFallbackModel() {
+        var models = models(false, Optional.of(FALLBACK));
+
+        assertThat(answerOf(models.model(WeatherAgent.class, "session-1"))).isEqualTo("default");
+        assertThat(answerOf(models.model(WeatherAgent.class, HedgedCalls.attemptSession("session-1", 2)))).isEqualTo("fallback");
+        assertThat(answerOf(models.model(SelectorAgent.class, HedgedCalls.attemptSession("session-1", 2)))).isEqualTo("fallback");
+    }
+
+    @Test
+    public void keepsTheAgentModelForHedgesWithoutAFallbackModel() {
+        var models = models(false, Optional.empty());
+
+        assertThat(answerOf(models.model(WeatherAgent.class, HedgedCalls.attemptSession("session-1", 2)))).isEqualTo("default");
+    }
+
+    @Test
+    public void routesSmallStructuredPromptsToTheSmallModel() {
+        var models = models(true, Optional.empty());
+
+        assertThat(answerOf(models.model(PlanningAgent.class, "Weekend in Lisbon", true))).isEqualTo("small");
+        assertThat(answerOf(models.model(PlanningAgent.class, "Weekend in Lisbon", false))).isEqualTo("default");
+        assertThat(answerOf(models.model(PlanningAgent.class, "Weekend in Lisbon ".repeat(200), true))).isEqualTo("default");
+    }
+
+    @Test
+    public void usesTheMockForEveryAgent() {
+        var routing = new AgentModels.Routing(Map.of("selector-agent", SMALL), true, SMALL, 100, Optional.of(FALLBACK));
+        var models = new AgentModels(Optional.of(model("mock")), openAi, routing, unlimited, metrics);
+
+        assertThat(answerOf(models.model(SelectorAgent.class))).isEqualTo("mock");
+        assertThat(answerOf(models.model(WeatherAgent.class, HedgedCalls.attemptSession("session-1", 2)))).isEqualTo("mock");
+        assertThat(answerOf(models.model(PlanningAgent.class, "Weekend in Lisbon", true))).isEqualTo("mock");
+    }
+
+    @Test
+    public void startsWithTheShippedConfigurationAndAnotherProvider() {
+        // no OpenAI key is needed when the agents use the configured provider
+        var config = ConfigFactory.parseString("akka.javasdk.agent.model-provider = anthropic")
+                .withFallback(ConfigFactory.parseResources("application.conf"))
+                .resolve();
+
+        assertThatCode(() -> AgentModels.fromConfig(config, unlimited, metrics)).doesNotThrowAnyException();
+    }
+
+    private static String answerOf(ModelProvider provider) {
+        var chatModel = (ChatModel) ((ModelProvider.Custom) provider).createChatModel();
+        return chatModel.chat("Hello");
+    }
+
+    // answers with its own name
+    private static ModelProvider.Custom model(String name) {
+        return new ModelProvider.Custom() {
+            @Override
+            public Object createChatModel() {
+                return new ChatModel() {
+                    @Override
+                    public ChatResponse doChat(ChatRequest request) {
+                        return ChatResponse.builder().aiMessage(AiMessage.from(name)).build();
+                    }
+                };
+            }
+
+            @Override
+            public Object createStreamingChatModel() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
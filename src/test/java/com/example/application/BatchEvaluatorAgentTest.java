@@ -0,0 +1,36 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchEvaluatorAgentTest {
+
+    private final List<BatchEvaluatorAgent.PlanToEvaluate> plans = List.of(
+            new BatchEvaluatorAgent.PlanToEvaluate("session-1", "Weekend in Lisbon", "Have dinner in Alfama"),
+            new BatchEvaluatorAgent.PlanToEvaluate("session-2", "Weather in Porto", "Sunny, 24°C")
+    );
+
+    @Test
+    public void identifiesEveryAnswerBySession() {
+        var prompt = BatchEvaluatorAgent.buildEvaluationPrompt(plans, List.of());
+
+        assertThat(prompt)
+                .contains("SESSION ID: session-1\nORIGINAL REQUEST:\nWeekend in Lisbon\nFINAL ANSWER TO EVALUATE:\nHave dinner in Alfama")
+                .contains("SESSION ID: session-2\nORIGINAL REQUEST:\nWeather in Porto\nFINAL ANSWER TO EVALUATE:\nSunny, 24°C")
+                .doesNotContain("USER PREFERENCES")
+                .endsWith("against its original request.");
+    }
+
+    @Test
+    public void sendsThePreferencesOnceForAllAnswers() {
+        var prompt = BatchEvaluatorAgent.buildEvaluationPrompt(plans, List.of("I'm vegetarian", "No museums"));
+
+        assertThat(prompt)
+                .startsWith("USER PREFERENCES:\n- I'm vegetarian\n- No museums\n\n")
+                .endsWith("against its original request and the user preferences.");
+        assertThat(prompt.split("USER PREFERENCES", -1)).hasSize(2);
+    }
+}
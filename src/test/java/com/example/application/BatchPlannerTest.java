@@ -0,0 +1,41 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchPlannerTest {
+
+    private final BatchPlanner planner = new BatchPlanner(new BatchPlanner.Settings(10, 2, Duration.ofMinutes(1)));
+    private final List<String> sessionIds = List.of("a", "b", "c", "d", "e");
+
+    @Test
+    public void queuesAllButParallelismPlans() {
+        assertThat(planner.isQueued(0)).isFalse();
+        assertThat(planner.isQueued(1)).isFalse();
+        assertThat(planner.isQueued(2)).isTrue();
+        assertThat(planner.isQueued(4)).isTrue();
+    }
+
+    @Test
+    public void chainsThePlansOfEachLane() {
+        // lanes a -> c -> e and b -> d
+        assertThat(planner.next(sessionIds, 0)).isEqualTo("c");
+        assertThat(planner.next(sessionIds, 2)).isEqualTo("e");
+        assertThat(planner.next(sessionIds, 4)).isNull();
+        assertThat(planner.next(sessionIds, 1)).isEqualTo("d");
+        assertThat(planner.next(sessionIds, 3)).isNull();
+
+        assertThat(planner.lastOfLanes(sessionIds)).containsExactly("d", "e");
+        assertThat(planner.lastOfLanes(List.of("a"))).containsExactly("a");
+    }
+
+    @Test
+    public void allowsThePlanTimeoutForEachPlanOfTheLongestLane() {
+        assertThat(planner.timeout(5)).isEqualTo(Duration.ofMinutes(3));
+        assertThat(planner.timeout(1)).isEqualTo(Duration.ofMinutes(1));
+    }
+}
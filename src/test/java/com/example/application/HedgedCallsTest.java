@@ -0,0 +1,98 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HedgedCallsTest {
+
+    private final Metrics metrics = new Metrics();
+    private final LlmRateLimiter unlimited = new LlmRateLimiter(new LlmRateLimiter.Settings(false, 1, 1), metrics);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private HedgedCalls hedgedCalls(Duration delay, int maxAttempts) {
+        return new HedgedCalls(
+                new HedgedCalls.Settings(true, 0.95, delay, delay, maxAttempts, Duration.ofMillis(1), Duration.ofMillis(5)),
+                unlimited,
+                metrics
+        );
+    }
+
+    @Test
+    public void hedgesACallThatDoesNotAnswerInTime() {
+        var hedged = hedgedCalls(Duration.ofMillis(20), 2);
+
+        var answer = hedged.call("weather-agent", attempt -> {
+            calls.incrementAndGet();
+            // the first attempt never answers
+            return attempt == 1 ? new CompletableFuture<String>() : CompletableFuture.completedFuture("sunny");
+        }, __ -> true);
+
+        assertThat(answer.toCompletableFuture().join()).isEqualTo("sunny");
+        assertThat(calls).hasValue(2);
+        assertThat(metrics.scrape()).contains("trip_planner_hedged_calls_won_total{call=\"weather-agent\"} 1");
+    }
+
+    @Test
+    public void retriesInvalidAnswers() {
+        var hedged = hedgedCalls(Duration.ofSeconds(10), 3);
+
+        var answer = hedged.call("weather-agent", attempt -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(attempt < 3 ? "ERROR: timeout" : "sunny");
+        }, response -> !response.startsWith("ERROR"));
+
+        assertThat(answer.toCompletableFuture().join()).isEqualTo("sunny");
+        assertThat(calls).hasValue(3);
+        assertThat(metrics.scrape()).contains("trip_planner_call_retries_total{call=\"weather-agent\"} 2");
+    }
+
+    @Test
+    public void failsWhenNoAttemptAnswers() {
+        var hedged = hedgedCalls(Duration.ofSeconds(10), 2);
+
+        CompletionStage<String> answer = hedged.call("weather-agent", attempt -> {
+            calls.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException("model unavailable"));
+        }, __ -> true);
+
+        assertThatThrownBy(() -> answer.toCompletableFuture().join())
+                .isInstanceOf(CompletionException.class)
+                .hasRootCauseMessage("model unavailable");
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    public void callsOnceWhenDisabled() {
+        var hedged = new HedgedCalls(
+                new HedgedCalls.Settings(false, 0.95, Duration.ZERO, Duration.ZERO, 3, Duration.ZERO, Duration.ZERO),
+                unlimited,
+                metrics
+        );
+
+        var answer = hedged.call("weather-agent", attempt -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("ERROR: timeout");
+        }, response -> !response.startsWith("ERROR"));
+
+        assertThat(answer.toCompletableFuture().join()).isEqualTo("ERROR: timeout");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    public void makesHedgesAndRetriesInSessionsOfTheirOwn() {
+        assertThat(HedgedCalls.attemptSession("session-1", 1)).isEqualTo("session-1");
+
+        var hedge = HedgedCalls.attemptSession("session-1", 2);
+        assertThat(hedge).isNotEqualTo("session-1").isNotEqualTo(HedgedCalls.attemptSession("session-1", 2));
+        assertThat(HedgedCalls.isAttemptSession(hedge)).isTrue();
+        assertThat(HedgedCalls.isAttemptSession("session-1")).isFalse();
+    }
+}
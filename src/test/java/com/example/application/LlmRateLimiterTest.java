@@ -0,0 +1,51 @@
+package com.example.application;
+
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LlmRateLimiterTest {
+
+    @Test
+    public void queuesCallsBeyondTheBurstInsteadOfFailingThem() {
+        var limiter = new LlmRateLimiter(new LlmRateLimiter.Settings(true, 20, 5), new Metrics());
+        var start = System.nanoTime();
+
+        var permits = IntStream.range(0, 15)
+                .mapToObj(i -> limiter.acquire().toCompletableFuture())
+                .toList();
+        assertThat(permits.stream().filter(CompletableFuture::isDone)).hasSize(5);
+        assertThat(limiter.saturated()).isTrue();
+
+        CompletableFuture.allOf(permits.toArray(CompletableFuture[]::new)).join();
+        // the 10 queued calls are let through at 20 per second
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(450));
+        assertThat(limiter.saturated()).isFalse();
+    }
+
+    @Test
+    public void letsEveryCallThroughWhenDisabled() {
+        var limiter = new LlmRateLimiter(new LlmRateLimiter.Settings(false, 1, 1), new Metrics());
+
+        var permits = IntStream.range(0, 10)
+                .mapToObj(i -> limiter.acquire().toCompletableFuture())
+                .toList();
+
+        assertThat(permits).allMatch(CompletableFuture::isDone);
+    }
+
+    @Test
+    public void rejectsARateOfZero() {
+        var config = ConfigFactory.parseString("enabled = true, calls-per-second = 0, burst = 5");
+
+        assertThatThrownBy(() -> LlmRateLimiter.Settings.fromConfig(config))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("calls-per-second");
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.application;
+
+import akka.javasdk.agent.ModelProvider;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MeteredModelProviderTest {
+
+    private final Metrics metrics = new Metrics();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    public void takesATokenForEveryModelCall() {
+        // one token at a time, 20 per second
+        var limiter = new LlmRateLimiter(new LlmRateLimiter.Settings(true, 20, 1), metrics);
+        var model = (ChatModel) new MeteredModelProvider(answering("Sunny"), "weather-agent", limiter, metrics).createChatModel();
+        var start = System.nanoTime();
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(model.chat("Weather in Lisbon?")).isEqualTo("Sunny");
+        }
+
+        // the three calls after the first waited for a token each
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(140));
+        assertThat(metrics.scrape()).contains("trip_planner_llm_call_duration_seconds_count{agent=\"weather-agent\"} 4");
+    }
+
+    @Test
+    public void doesNotRetryFailedCalls() {
+        var limiter = new LlmRateLimiter(new LlmRateLimiter.Settings(false, 1, 1), metrics);
+        var model = (ChatModel) new MeteredModelProvider(failing(), "weather-agent", limiter, metrics).createChatModel();
+
+        assertThatThrownBy(() -> model.chat("Weather in Lisbon?")).hasMessageContaining("rate limited");
+
+        assertThat(calls).hasValue(1);
+        assertThat(metrics.scrape()).contains("trip_planner_llm_call_failures_total{agent=\"weather-agent\"} 1");
+    }
+
+    private ModelProvider.Custom answering(String answer) {
+        return model(() -> ChatResponse.builder().aiMessage(AiMessage.from(answer)).build());
+    }
+
+    private ModelProvider.Custom failing() {
+        return model(() -> {
+            throw new IllegalStateException("rate limited");
+        });
+    }
+
+    private ModelProvider.Custom model(Supplier<ChatResponse> answer) {
+        return new ModelProvider.Custom() {
+            @Override
+            public Object createChatModel() {
+                return new ChatModel() {
+                    @Override
+                    public ChatResponse doChat(ChatRequest request) {
+                        calls.incrementAndGet();
+                        return answer.get();
+                    }
+                };
+            }
+
+            @Override
+            public Object createStreamingChatModel() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
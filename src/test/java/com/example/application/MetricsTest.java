@@ -0,0 +1,80 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetricsTest {
+
+    @Test
+    public void rendersCountersWithLabels() {
+        var metrics = new Metrics();
+        metrics.increment(Metrics.LLM_INPUT_TOKENS, 100, "agent", "weather-agent");
+        metrics.increment(Metrics.LLM_INPUT_TOKENS, 20, "agent", "weather-agent");
+
+        assertThat(metrics.scrape())
+                .contains("# TYPE trip_planner_llm_input_tokens_total counter\n")
+                .contains("trip_planner_llm_input_tokens_total{agent=\"weather-agent\"} 120\n");
+    }
+
+    @Test
+    public void rendersCumulativeHistogramBuckets() {
+        var metrics = new Metrics();
+        metrics.recordDuration(Metrics.STEP_DURATION, Duration.ofMillis(40), "step", "create-plan");
+        metrics.recordDuration(Metrics.STEP_DURATION, Duration.ofMillis(700), "step", "create-plan");
+
+        assertThat(metrics.scrape())
+                .contains("# TYPE trip_planner_workflow_step_duration_seconds histogram\n")
+                .contains("trip_planner_workflow_step_duration_seconds_bucket{step=\"create-plan\",le=\"0.025\"} 0\n")
+                .contains("trip_planner_workflow_step_duration_seconds_bucket{step=\"create-plan\",le=\"0.05\"} 1\n")
+                .contains("trip_planner_workflow_step_duration_seconds_bucket{step=\"create-plan\",le=\"1.0\"} 2\n")
+                .contains("trip_planner_workflow_step_duration_seconds_bucket{step=\"create-plan\",le=\"+Inf\"} 2\n")
+                .contains("trip_planner_workflow_step_duration_seconds_count{step=\"create-plan\"} 2\n");
+    }
+
+    @Test
+    public void rendersUnlabelledHistograms() {
+        var metrics = new Metrics();
+        metrics.recordDuration(Metrics.PREFERENCES_FETCH_DURATION, Duration.ofMillis(3));
+
+        assertThat(metrics.scrape())
+                .contains("trip_planner_preferences_fetch_duration_seconds_bucket{le=\"0.005\"} 1\n")
+                .contains("trip_planner_preferences_fetch_duration_seconds_count 1\n");
+    }
+
+    @Test
+    public void rendersSizeHistogramsInBytes() {
+        var metrics = new Metrics();
+        metrics.recordSize(Metrics.STATE_SIZE, 3000);
+
+        assertThat(metrics.scrape())
+                .contains("# TYPE trip_planner_workflow_state_size_bytes histogram\n")
+                .contains("trip_planner_workflow_state_size_bytes_bucket{le=\"1024.0\"} 0\n")
+                .contains("trip_planner_workflow_state_size_bytes_bucket{le=\"4096.0\"} 1\n")
+                .contains("trip_planner_workflow_state_size_bytes_sum 3000.0\n");
+    }
+
+    @Test
+    public void rendersGaugesWithTheirPeak() {
+        var metrics = new Metrics();
+        metrics.adjust(Metrics.PLAN_REQUESTS_IN_FLIGHT, 1);
+        metrics.adjust(Metrics.PLAN_REQUESTS_IN_FLIGHT, 1);
+        metrics.adjust(Metrics.PLAN_REQUESTS_IN_FLIGHT, -1);
+
+        assertThat(metrics.scrape())
+                .contains("# TYPE trip_planner_plan_requests_in_flight gauge\n")
+                .contains("trip_planner_plan_requests_in_flight 1\n")
+                .contains("# TYPE trip_planner_plan_requests_in_flight_peak gauge\n")
+                .contains("trip_planner_plan_requests_in_flight_peak 2\n");
+    }
+
+    @Test
+    public void escapesLabelValues() {
+        var metrics = new Metrics();
+        metrics.increment(Metrics.STEP_FAILURES, 1, "step", "a\"b");
+
+        assertThat(metrics.scrape()).contains("{step=\"a\\\"b\"} 1\n");
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlanCoalescerTest {
+
+    private final AtomicInteger started = new AtomicInteger();
+
+    private final Supplier<CompletionStage<String>> start =
+            () -> CompletableFuture.completedFuture("session-" + started.incrementAndGet());
+
+    private static PlanCoalescer coalescer() {
+        return new PlanCoalescer(true, new QueryCache<>(100, Duration.ofSeconds(30)));
+    }
+
+    @Test
+    public void attachesDuplicatesToTheFirstPlan() {
+        var coalescer = coalescer();
+
+        var first = coalescer.startOnce("alice", "Weekend in Lisbon", 2, start);
+        var retry = coalescer.startOnce("alice", "weekend in lisbon!", 2, start);
+
+        assertThat(first.coalesced()).isFalse();
+        assertThat(retry.coalesced()).isTrue();
+        assertThat(retry.sessionId().toCompletableFuture().join()).isEqualTo("session-1");
+        assertThat(started).hasValue(1);
+    }
+
+    @Test
+    public void startsAnotherPlanForOtherUsersOrPreferences() {
+        var coalescer = coalescer();
+
+        coalescer.startOnce("alice", "Weekend in Lisbon", 2, start);
+        var otherUser = coalescer.startOnce("bob", "Weekend in Lisbon", 2, start);
+        var newPreferences = coalescer.startOnce("alice", "Weekend in Lisbon", 3, start);
+
+        assertThat(otherUser.coalesced()).isFalse();
+        assertThat(newPreferences.coalesced()).isFalse();
+        assertThat(started).hasValue(3);
+    }
+
+    @Test
+    public void doesNotAttachToFailedStarts() {
+        var coalescer = coalescer();
+
+        coalescer.startOnce("alice", "Weekend in Lisbon", 2, () -> CompletableFuture.failedFuture(new RuntimeException("boom")));
+        var retry = coalescer.startOnce("alice", "Weekend in Lisbon", 2, start);
+
+        assertThat(retry.coalesced()).isFalse();
+        assertThat(retry.sessionId().toCompletableFuture().join()).isEqualTo("session-1");
+    }
+}
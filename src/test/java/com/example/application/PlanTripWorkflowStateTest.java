@@ -0,0 +1,90 @@
+package com.example.application;
+
+import akka.javasdk.JsonSupport;
+import com.example.domain.AgentPlan;
+import com.example.domain.AgentResponse;
+import com.example.domain.AgentSelection;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlanTripWorkflowStateTest {
+
+    @Test
+    public void readsStatesPersistedWithPlainStringResponses() throws Exception {
+        // the state as persisted before this series: no step dependencies, plain string responses
+        // and none of the fields added since
+        var json = """
+                {
+                  "userId": "alice",
+                  "userQuery": "Weekend in Lisbon",
+                  "plan": {"steps": [{"agentId": "activity-agent", "query": "Things to do in Lisbon"}]},
+                  "finalAnswer": "Sunny, visit Alfama",
+                  "agentResponses": {"weather-agent": "Sunny, 24°C", "activity-agent": "Visit Alfama"},
+                  "status": "COMPLETED"
+                }
+                """;
+
+        var state = JsonSupport.getObjectMapper().readValue(json, PlanTripWorkflow.State.class);
+
+        assertThat(state.agentResponses())
+                .containsEntry("weather-agent", AgentResponse.inline("Sunny, 24°C"))
+                .containsEntry("activity-agent", AgentResponse.inline("Visit Alfama"));
+        assertThat(state.plan().steps()).singleElement()
+                .satisfies(step -> assertThat(step.dependsOn()).isEmpty());
+        assertThat(state.status()).isEqualTo(PlanTripWorkflow.Status.COMPLETED);
+        assertThat(state.executedPlan()).isNull();
+        assertThat(state.currentStep()).isNull();
+        assertThat(state.streamSummary()).isFalse();
+        assertThat(state.preferences()).isNull();
+        assertThat(state.createdAt()).isNull();
+        assertThat(state.batch()).isNull();
+        assertThat(state.rerunning()).isFalse();
+    }
+
+    @Test
+    public void readsStatesWithStoredResponses() throws Exception {
+        var state = PlanTripWorkflow.State.init("alice", "Weekend in Lisbon", false, Instant.parse("2025-06-01T10:00:00Z"))
+                .addAgentResponses(Map.of("weather-agent", AgentResponse.stored("content-1")));
+
+        var json = JsonSupport.encodeToString(state);
+
+        assertThat(JsonSupport.getObjectMapper().readValue(json, PlanTripWorkflow.State.class).agentResponses())
+                .containsEntry("weather-agent", AgentResponse.stored("content-1"));
+    }
+
+    @Test
+    public void keepsTheBatchOfAQueuedPlan() throws Exception {
+        var batch = new PlanTripWorkflow.BatchPlan(new AgentSelection(List.of("weather-agent")), "session-3");
+        var queued = PlanTripWorkflow.State.init("alice", "Weekend in Porto", false, Instant.parse("2025-06-01T10:00:00Z"))
+                .inBatch(batch)
+                .queued();
+
+        var read = JsonSupport.getObjectMapper().readValue(JsonSupport.encodeToString(queued), PlanTripWorkflow.State.class);
+
+        assertThat(read.status()).isEqualTo(PlanTripWorkflow.Status.QUEUED);
+        assertThat(read.dequeued().status()).isEqualTo(PlanTripWorkflow.Status.STARTED);
+        assertThat(read.dequeued().batch()).isEqualTo(batch);
+    }
+
+    @Test
+    public void marksPlansAnsweredAgainUntilTheyAreAnswered() {
+        var answered = PlanTripWorkflow.State.init("alice", "Weekend in Lisbon", false, Instant.parse("2025-06-01T10:00:00Z"))
+                .withFinalAnswer("Sunny, visit Alfama")
+                .complete();
+        assertThat(answered.rerunning()).isFalse();
+
+        var rerun = answered.rerun(new AgentPlan());
+        var restarted = answered.restart();
+
+        assertThat(rerun.rerunning()).isTrue();
+        assertThat(restarted.rerunning()).isTrue();
+        assertThat(restarted.finalAnswer()).isEmpty();
+        assertThat(rerun.withFinalAnswer("Rain, visit a museum").complete().rerunning()).isFalse();
+        assertThat(restarted.failed().rerunning()).isFalse();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PreferenceRelevanceTest {
+
+    private final PreferenceRelevance relevance = PreferenceRelevance.create(new PreferenceRelevance.Settings(
+            true,
+            1,
+            Map.of(
+                    "food", List.of("food", "restaurant", "dinner", "vegetarian"),
+                    "mobility", List.of("walk", "stairs", "wheelchair")
+            )
+    ));
+
+    @Test
+    public void keepsPlansThatMentionTheTopicOfThePreference() {
+        var words = relevance.relevantWords("I'm vegetarian");
+
+        assertThat(relevance.isRelevant(words, "Weekend in Lisbon", "Have dinner at a restaurant in Alfama")).isTrue();
+    }
+
+    @Test
+    public void skipsPlansThatDoNotMentionIt() {
+        var words = relevance.relevantWords("I'm vegetarian");
+
+        assertThat(relevance.isRelevant(words, "Weather in Lisbon", "Sunny, 24°C all weekend")).isFalse();
+    }
+
+    @Test
+    public void matchesTheWordsOfThePreferenceItself() {
+        var words = relevance.relevantWords("I can't walk long distances over cobblestones");
+
+        assertThat(relevance.isRelevant(words, "Weekend in Lisbon", "Mind the cobblestones in the old town")).isTrue();
+    }
+
+    @Test
+    public void keepsEveryPlanForPreferencesWithoutTopic() {
+        var words = relevance.relevantWords("I prefer window seats");
+
+        assertThat(words).isEmpty();
+        assertThat(relevance.isRelevant(words, "Weather in Lisbon", "Sunny, 24°C all weekend")).isTrue();
+    }
+
+    @Test
+    public void combinesTheWordsOfABurstOfPreferences() {
+        var words = relevance.relevantWords(List.of("I'm vegetarian", "No stairs please"));
+
+        assertThat(relevance.isRelevant(words, "Weekend in Lisbon", "Have dinner in Alfama")).isTrue();
+        assertThat(relevance.isRelevant(words, "Weekend in Lisbon", "Take the stairs to the castle")).isTrue();
+        assertThat(relevance.isRelevant(words, "Weather in Lisbon", "Sunny, 24°C all weekend")).isFalse();
+        assertThat(relevance.relevantWords(List.of("I'm vegetarian", "I prefer window seats"))).isEmpty();
+    }
+}
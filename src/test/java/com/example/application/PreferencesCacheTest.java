@@ -0,0 +1,61 @@
+package com.example.application;
+
+import com.example.domain.Preferences;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PreferencesCacheTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final PreferencesCache cache = new PreferencesCache(new QueryCache<>(10, Duration.ofMinutes(5), clock));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Preferences load(String... preferences) {
+        loads.incrementAndGet();
+        return new Preferences(List.of(preferences));
+    }
+
+    @Test
+    public void loadsThePreferencesOfAUserOnce() {
+        cache.getOrLoad("alice", () -> load("I'm vegetarian"));
+        var preferences = cache.getOrLoad("alice", () -> load("I'm vegetarian"));
+
+        assertThat(preferences.entries()).containsExactly("I'm vegetarian");
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats()).isEqualTo(new QueryCache.Stats(1, 1, 1));
+    }
+
+    @Test
+    public void reloadsThePreferencesOfAUserOnceInvalidated() {
+        cache.getOrLoad("alice", () -> load("I'm vegetarian"));
+        cache.getOrLoad("bob", () -> load("No museums"));
+
+        // as the PreferencesConsumer does when a preference of the user is added
+        cache.invalidate("alice");
+
+        assertThat(cache.getOrLoad("alice", () -> load("I'm vegetarian", "I love hiking")).entries())
+                .containsExactly("I'm vegetarian", "I love hiking");
+        assertThat(cache.getOrLoad("bob", () -> load("No museums", "Window seats")).entries())
+                .containsExactly("No museums");
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    public void reloadsThePreferencesOfAUserAfterTtl() {
+        cache.getOrLoad("alice", () -> load("I'm vegetarian"));
+
+        clock.advance(Duration.ofMinutes(4));
+        cache.getOrLoad("alice", () -> load("I'm vegetarian", "I love hiking"));
+        assertThat(loads).hasValue(1);
+
+        clock.advance(Duration.ofMinutes(2));
+        assertThat(cache.getOrLoad("alice", () -> load("I'm vegetarian", "I love hiking")).entries())
+                .containsExactly("I'm vegetarian", "I love hiking");
+        assertThat(loads).hasValue(2);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PreferencesReEvaluationTest {
+
+    @Test
+    public void splitsPlansInBatches() {
+        assertThat(PreferencesReEvaluation.batches(List.of("a", "b", "c", "d", "e"), 2))
+                .containsExactly(List.of("a", "b"), List.of("c", "d"), List.of("e"));
+        assertThat(PreferencesReEvaluation.batches(List.of(), 2)).isEmpty();
+    }
+
+    @Test
+    public void dealsBatchesOverTheLanesInTurn() {
+        assertThat(PreferencesReEvaluation.lanes(List.of("1", "2", "3", "4", "5"), 2))
+                .containsExactly(List.of("1", "3", "5"), List.of("2", "4"));
+    }
+
+    @Test
+    public void usesNoMoreLanesThanBatches() {
+        assertThat(PreferencesReEvaluation.lanes(List.of("1", "2"), 4))
+                .containsExactly(List.of("1"), List.of("2"));
+    }
+
+    @Test
+    public void findsTheSessionsLeftOutOfABatchEvaluation() {
+        var evaluations = List.of(
+                new BatchEvaluatorAgent.PlanEvaluation("a", 1, "fine"),
+                new BatchEvaluatorAgent.PlanEvaluation("unknown", 0, "not asked for")
+        );
+
+        assertThat(PreferencesReEvaluation.missingSessionIds(List.of("a", "b", "c"), evaluations))
+                .containsExactly("b", "c");
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryCacheTest {
+
+    @Test
+    public void normalizesCaseAndPunctuation() {
+        assertThat(QueryCache.normalize("Weekend trip to Lisbon"))
+                .isEqualTo(QueryCache.normalize("  weekend trip to lisbon! "));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntry() {
+        var cache = new QueryCache<String>(2, Duration.ofMinutes(1));
+        cache.put("fp", "a", "A");
+        cache.put("fp", "b", "B");
+        cache.get("fp", "a");
+        cache.put("fp", "c", "C");
+
+        assertThat(cache.get("fp", "a")).contains("A");
+        assertThat(cache.get("fp", "b")).isEmpty();
+        assertThat(cache.get("fp", "c")).contains("C");
+        assertThat(cache.stats()).isEqualTo(new QueryCache.Stats(3, 1, 2));
+    }
+
+    @Test
+    public void expiresEntriesAfterTtl() {
+        var clock = new MutableClock();
+        var cache = new QueryCache<String>(10, Duration.ofMinutes(1), clock);
+        cache.put("fp", "a", "A");
+
+        clock.advance(Duration.ofMinutes(2));
+
+        assertThat(cache.get("fp", "a")).isEmpty();
+    }
+
+    @Test
+    public void invalidatesWhenCatalogChanges() {
+        var cache = new QueryCache<String>(10, Duration.ofMinutes(1));
+        cache.put("fp1", "a", "A");
+
+        assertThat(cache.get("fp2", "a")).isEmpty();
+        assertThat(cache.get("fp1", "a")).isEmpty();
+    }
+}
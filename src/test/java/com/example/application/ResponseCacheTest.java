@@ -0,0 +1,54 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseCacheTest {
+
+    private final Metrics metrics = new Metrics();
+
+    private ResponseCache cache(Clock clock) {
+        return new ResponseCache(new ResponseCache.Settings(Set.of("weather-agent"), 100, Duration.ofHours(1)), clock, metrics);
+    }
+
+    @Test
+    public void answersTheSameQueryFromTheCache() {
+        var cache = cache(Clock.fixed(Instant.parse("2025-06-01T10:00:00Z"), ZoneOffset.UTC));
+
+        assertThat(cache.get("weather-agent", "Weather in Tokyo tomorrow?")).isEmpty();
+        cache.put("weather-agent", "Weather in Tokyo tomorrow?", "Sunny, 25°C");
+
+        assertThat(cache.get("weather-agent", "weather in tokyo tomorrow")).hasValue("Sunny, 25°C");
+        assertThat(metrics.scrape())
+                .contains("trip_planner_response_cache_lookups_total{agent=\"weather-agent\",result=\"hit\"} 1")
+                .contains("trip_planner_response_cache_lookups_total{agent=\"weather-agent\",result=\"miss\"} 1");
+    }
+
+    @Test
+    public void doesNotAnswerOnAnotherDay() {
+        var clock = new MutableClock(Instant.parse("2025-06-01T23:30:00Z"));
+        var cache = cache(clock);
+        cache.put("weather-agent", "Weather in Tokyo tomorrow?", "Sunny, 25°C");
+        assertThat(cache.get("weather-agent", "Weather in Tokyo tomorrow?")).hasValue("Sunny, 25°C");
+
+        // well within the TTL, but past midnight "tomorrow" is another day
+        clock.advance(Duration.ofMinutes(40));
+
+        assertThat(cache.get("weather-agent", "Weather in Tokyo tomorrow?")).isEmpty();
+    }
+
+    @Test
+    public void ignoresAgentsThatDidNotOptIn() {
+        var cache = cache(Clock.systemUTC());
+        cache.put("planning-agent", "Weekend in Lisbon", "Day 1: ...");
+
+        assertThat(cache.get("planning-agent", "Weekend in Lisbon")).isEmpty();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpeculationSettingsTest {
+
+    private final PlanTripWorkflow.SpeculationSettings settings = new PlanTripWorkflow.SpeculationSettings(true, 0.8);
+
+    @Test
+    public void plannedQueryWithTheSameWordsIsEquivalent() {
+        assertThat(settings.equivalent("Plan a weekend in Lisbon", "plan a weekend in lisbon!")).isTrue();
+    }
+
+    @Test
+    public void tailoredQueryIsNotEquivalent() {
+        assertThat(settings.equivalent(
+                "Plan a weekend in Lisbon",
+                "What is the weather forecast in Lisbon for next weekend?"
+        )).isFalse();
+    }
+}
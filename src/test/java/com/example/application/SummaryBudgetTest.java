@@ -0,0 +1,44 @@
+package com.example.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SummaryBudgetTest {
+
+    private static final SummaryBudget.Settings SETTINGS = new SummaryBudget.Settings(1000, 200);
+
+    @Test
+    public void keepsResponsesThatFitTheBudget() {
+        var request = new SummarizerAgent.Request("weekend in Lisbon", List.of("Sunny, 24°C", "Visit Belém"));
+
+        var parts = SummaryBudget.parts(request, SETTINGS);
+
+        assertThat(parts).noneMatch(SummaryBudget.Part::condensed);
+        assertThat(parts).extracting(SummaryBudget.Part::text).containsExactly("Sunny, 24°C", "Visit Belém");
+    }
+
+    @Test
+    public void condensesOnlyOversizedResponses() {
+        var itinerary = "Walk through Alfama and have lunch in Baixa. ".repeat(200);
+        var request = new SummarizerAgent.Request("weekend in Lisbon", List.of("Sunny, 24°C", itinerary));
+
+        var parts = SummaryBudget.parts(request, SETTINGS);
+
+        assertThat(parts.get(0).condensed()).isFalse();
+        var condensed = parts.get(1);
+        assertThat(condensed.condensed()).isTrue();
+        assertThat(condensed.chunks()).allMatch(chunk -> SummaryBudget.estimateTokens(chunk) <= 200);
+        assertThat(String.join(" ", condensed.chunks())).isEqualTo(itinerary.strip());
+        // the condensed chunks together stay within what the short response left over
+        assertThat(condensed.chunkTargetTokens() * condensed.chunks().size()).isLessThan(1000);
+    }
+
+    @Test
+    public void splitsChunksAtWhitespace() {
+        assertThat(SummaryBudget.chunks("aaa bbb ccc", 5)).containsExactly("aaa", "bbb", "ccc");
+        assertThat(SummaryBudget.chunks("aaaaaaa", 3)).containsExactly("aaa", "aaa", "a");
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AgentPlanTest {
+
+    @Test
+    public void independentStepsAreReadyTogether() {
+        var plan = new AgentPlan(List.of(
+                new AgentPlanStep("weather-agent", "Weather in Lisbon"),
+                new AgentPlanStep("planning-agent", "Weekend in Lisbon")
+        ));
+
+        assertThat(plan.readySteps()).extracting(AgentPlanStep::agentId)
+                .containsExactly("weather-agent", "planning-agent");
+    }
+
+    @Test
+    public void dependentStepWaitsForPendingDependency() {
+        var plan = new AgentPlan(List.of(
+                new AgentPlanStep("weather-agent", "Weather in Lisbon"),
+                new AgentPlanStep("planning-agent", "Weekend in Lisbon", List.of("weather-agent"))
+        ));
+
+        assertThat(plan.readySteps()).extracting(AgentPlanStep::agentId)
+                .containsExactly("weather-agent");
+    }
+
+    @Test
+    public void cyclicPlanStillMakesProgress() {
+        var plan = new AgentPlan(List.of(
+                new AgentPlanStep("weather-agent", "Weather in Lisbon", List.of("planning-agent")),
+                new AgentPlanStep("planning-agent", "Weekend in Lisbon", List.of("weather-agent"))
+        ));
+
+        assertThat(plan.readySteps()).hasSize(2);
+    }
+
+    @Test
+    public void affectedStepsIncludeTransitiveDependents() {
+        var plan = new AgentPlan(List.of(
+                new AgentPlanStep("weather-agent", "Weather in Lisbon"),
+                new AgentPlanStep("planning-agent", "Weekend in Lisbon", List.of("weather-agent")),
+                new AgentPlanStep("booking-agent", "Book the activities", List.of("planning-agent")),
+                new AgentPlanStep("transport-agent", "Airport transfer")
+        ));
+
+        assertThat(plan.stepsAffectedBy(Set.of("planning-agent")).steps()).extracting(AgentPlanStep::agentId)
+                .containsExactly("planning-agent", "booking-agent");
+        assertThat(plan.stepsAffectedBy(Set.of("hotel-agent")).steps()).isEmpty();
+    }
+}
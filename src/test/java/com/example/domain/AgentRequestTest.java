@@ -0,0 +1,42 @@
+package com.example.domain;
+
+import akka.javasdk.JsonSupport;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AgentRequestTest {
+
+    @Test
+    public void appendsTheAnswersItDependsOn() {
+        var answers = new LinkedHashMap<String, String>();
+        answers.put("weather-agent", "Sunny, 24°C");
+        answers.put("activity-agent", "Visit Alfama");
+        var request = new AgentRequest("alice", "Plan a day in Lisbon", null, answers);
+
+        assertThat(request.messageWithDependencies()).isEqualTo("""
+                Plan a day in Lisbon
+
+                Answers of other agents to build on:
+                - weather-agent: Sunny, 24°C
+                - activity-agent: Visit Alfama""");
+    }
+
+    @Test
+    public void keepsTheMessageWithoutDependencies() {
+        assertThat(new AgentRequest("alice", "Weather in Lisbon").messageWithDependencies()).isEqualTo("Weather in Lisbon");
+    }
+
+    @Test
+    public void readsRequestsWithoutDependencyAnswers() throws Exception {
+        var json = """
+                {"userId": "alice", "message": "Weather in Lisbon", "preferences": null}
+                """;
+
+        var request = JsonSupport.getObjectMapper().readValue(json, AgentRequest.class);
+
+        assertThat(request.dependencyAnswers()).isEmpty();
+    }
+}
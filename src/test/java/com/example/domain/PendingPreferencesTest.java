@@ -0,0 +1,51 @@
+package com.example.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PendingPreferencesTest {
+
+    @Test
+    public void keepsPreferencesAddedAfterThePassStarted() {
+        var pending = PendingPreferences.empty().add(List.of("vegetarian", "no stairs"));
+        var afterPass = pending.add(List.of("early riser")).acknowledge(pending.lastSeq());
+
+        assertThat(afterPass.preferences()).containsExactly("early riser");
+    }
+
+    @Test
+    public void acknowledgesNoMoreThanIsPending() {
+        assertThat(PendingPreferences.empty().add(List.of("vegetarian")).acknowledge(3).preferences()).isEmpty();
+    }
+
+    @Test
+    public void keepsPreferencesOfOverlappingPasses() {
+        var pending = PendingPreferences.empty().add(List.of("a", "b"));
+        var pass1 = pending.lastSeq();
+        pending = pending.add(List.of("c"));
+        var pass2 = pending.lastSeq();
+
+        pending = pending.acknowledge(pass1);
+        assertThat(pending.preferences()).containsExactly("c");
+        pending = pending.add(List.of("d"));
+        pending = pending.acknowledge(pass2);
+
+        assertThat(pending.preferences()).containsExactly("d");
+    }
+
+    @Test
+    public void ignoresAcknowledgementsOfPassesAlreadyAcknowledged() {
+        var pending = PendingPreferences.empty().add(List.of("a", "b"));
+        var pass1 = pending.lastSeq();
+        pending = pending.add(List.of("c"));
+        var pass2 = pending.lastSeq();
+
+        // the later pass finishes first
+        pending = pending.acknowledge(pass2).add(List.of("d")).acknowledge(pass1);
+
+        assertThat(pending.preferences()).containsExactly("d");
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PreferencesTest {
+
+    private static final Preferences EMPTY = new Preferences(List.of());
+
+    @Test
+    public void ignoresDuplicatesOnceNormalized() {
+        var preferences = EMPTY.addPreference("Vegetarian").addPreference("vegetarian!");
+
+        assertThat(preferences.entries()).containsExactly("Vegetarian");
+        assertThat(preferences.version()).isEqualTo(1);
+    }
+
+    @Test
+    public void earlierVersionsAreNotChangedByAppends() {
+        var v1 = EMPTY.addPreference("vegetarian");
+        var v2 = v1.addPreference("no stairs");
+        // appending to an older version must not see, nor overwrite, the later entries
+        var branch = v1.addPreference("early riser");
+
+        assertThat(v1.entries()).containsExactly("vegetarian");
+        assertThat(v1.contains("no stairs")).isFalse();
+        assertThat(v2.entries()).containsExactly("vegetarian", "no stairs");
+        assertThat(branch.entries()).containsExactly("vegetarian", "early riser");
+    }
+
+    @Test
+    public void keepsOnlyNewPreferencesOfABulkAdd() {
+        var preferences = EMPTY.addPreference("vegetarian");
+
+        assertThat(preferences.newPreferences(List.of("Vegetarian", "no stairs", "No stairs.", "early riser")))
+                .containsExactly("no stairs", "early riser");
+    }
+
+    @Test
+    public void equalsPreferencesBuiltFromPlainLists() {
+        var appended = EMPTY.addPreferences(List.of("vegetarian", "no stairs"));
+
+        assertThat(appended).isEqualTo(new Preferences(List.of("vegetarian", "no stairs")));
+    }
+}
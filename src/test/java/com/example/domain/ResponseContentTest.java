@@ -0,0 +1,23 @@
+package com.example.domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseContentTest {
+
+    @Test
+    public void compressesAndDecompressesText() {
+        var text = "Lisbon is sunny this weekend. ".repeat(200);
+        var content = ResponseContent.compress(text);
+
+        assertThat(content.compressed().length).isLessThan(text.length());
+        assertThat(content.decompress()).isEqualTo(text);
+    }
+
+    @Test
+    public void contentIdIsStableForTheSameText() {
+        assertThat(ResponseContent.contentId("Lisbon")).isEqualTo(ResponseContent.contentId("Lisbon"));
+        assertThat(ResponseContent.contentId("Lisbon")).isNotEqualTo(ResponseContent.contentId("Porto"));
+    }
+}